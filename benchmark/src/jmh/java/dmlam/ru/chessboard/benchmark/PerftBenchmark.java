@@ -0,0 +1,62 @@
+package dmlam.ru.chessboard.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import dmlam.ru.chessboard.ChessBoard;
+
+// скорость генератора ходов на позициях PerftSuite. Счетчик "nodes" выводится в узлах в секунду
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PerftBenchmark {
+
+    @Param({"STARTING_POSITION", "KIWIPETE", "POSITION_3", "POSITION_4", "POSITION_5", "POSITION_6"})
+    public PerftSuite position;
+
+    @Param({"3"})
+    public int depth;
+
+    private ChessBoard board;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = position.createBoard();
+
+        // не меряем скорость неправильного генератора
+        long nodes = board.perft(depth);
+        if (depth <= position.getMaxDepth() && nodes != position.getNodes(depth)) {
+            throw new IllegalStateException(String.format("perft(%d) for %s is %d, expected %d", depth, position, nodes, position.getNodes(depth)));
+        }
+    }
+
+    @Benchmark
+    public long perft(Nodes counter) {
+        long nodes = board.perft(depth);
+
+        counter.nodes += nodes;
+
+        return nodes;
+    }
+}
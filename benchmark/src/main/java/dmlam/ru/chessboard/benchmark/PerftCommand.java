@@ -0,0 +1,69 @@
+package dmlam.ru.chessboard.benchmark;
+
+import java.util.Map;
+
+import dmlam.ru.chessboard.ChessBoard;
+
+// perft из командной строки.
+// Без FEN прогоняет весь PerftSuite до заданной глубины и завершается с кодом 1, если хоть одно число не совпало
+// с эталоном, - годится как проверка перед сборкой. С FEN печатает perft (или divide) для этой позиции
+public class PerftCommand {
+
+    public static void main(String[] args) {
+        String fen = args.length > 0 ? args[0].trim() : "";
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        boolean divide = args.length > 2 && "divide".equals(args[2]);
+
+        if (fen.isEmpty()) {
+            System.exit(runSuite(depth) ? 0 : 1);
+        }
+
+        ChessBoard board = new ChessBoard();
+        board.loadFromFEN(fen);
+
+        long start = System.nanoTime();
+        long nodes;
+
+        if (divide) {
+            nodes = 0;
+            for (Map.Entry<String, Long> entry : board.divide(depth).entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+                nodes += entry.getValue();
+            }
+        }
+        else {
+            nodes = board.perft(depth);
+        }
+
+        report(nodes, System.nanoTime() - start);
+    }
+
+    private static boolean runSuite(int maxDepth) {
+        boolean result = true;
+        long nodes = 0;
+        long start = System.nanoTime();
+
+        for (PerftSuite position : PerftSuite.values()) {
+            ChessBoard board = position.createBoard();
+
+            for (int depth = 1; depth <= Math.min(maxDepth, position.getMaxDepth()); depth++) {
+                long count = board.perft(depth);
+
+                nodes += count;
+                if (count != position.getNodes(depth)) {
+                    System.out.println(String.format("%s depth %d: %d nodes, expected %d", position, depth, count, position.getNodes(depth)));
+                    result = false;
+                }
+            }
+        }
+
+        report(nodes, System.nanoTime() - start);
+        System.out.println(result ? "OK" : "FAILED");
+
+        return result;
+    }
+
+    private static void report(long nodes, long nanos) {
+        System.out.println(String.format("%d nodes, %.3f s, %.0f nodes/s", nodes, nanos / 1e9, nodes / (nanos / 1e9)));
+    }
+}
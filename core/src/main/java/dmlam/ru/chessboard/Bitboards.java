@@ -0,0 +1,204 @@
+package dmlam.ru.chessboard;
+
+import dmlam.ru.chessboard.Piece.Color;
+import dmlam.ru.chessboard.Piece.Kind;
+
+// битборды для запросов атак и шахов в ChessBoard.
+// Номер поля - x + y * 8: a1 = 0, h1 = 7, a8 = 56, h8 = 63
+final class Bitboards {
+    // индексы в массиве битбордов: 0..11 - фигуры (Piece.getID()), далее - занятость полей по цветам и общая
+    static final int WHITE_PIECES = 12;
+    static final int BLACK_PIECES = 13;
+    static final int ALL_PIECES = 14;
+    static final int COUNT = 15;
+
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_B = FILE_A << 1;
+    static final long FILE_G = FILE_A << 6;
+    static final long FILE_H = FILE_A << 7;
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_8 = RANK_1 << 56;
+    static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;  // черные поля (a1, c1, ..., b2, d2, ...)
+
+    // заранее посчитанные атаки фигур с каждого поля
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];  // [Color.ordinal()][поле]
+
+    // лучи от поля до края доски. Направления 0..3 идут в сторону увеличения индекса поля, 4..7 - уменьшения
+    private static final int NORTH = 0, EAST = 1, NORTH_EAST = 2, NORTH_WEST = 3, SOUTH = 4, WEST = 5, SOUTH_WEST = 6, SOUTH_EAST = 7;
+    private static final int[] RAY_DX = {0, 1, 1, -1, 0, -1, -1, 1};
+    private static final int[] RAY_DY = {1, 0, 1, 1, -1, 0, -1, -1};
+    private static final long[][] RAYS = new long[8][64];
+    private static final long[][] BETWEEN = new long[64][64];  // поля строго между двумя полями на одной линии, иначе 0
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            long b = bit(square);
+
+            KNIGHT_ATTACKS[square] = knightAttacks(b);
+            KING_ATTACKS[square] = kingAttacks(b);
+            PAWN_ATTACKS[Color.WHITE.ordinal()][square] = pawnAttacks(b, Color.WHITE);
+            PAWN_ATTACKS[Color.BLACK.ordinal()][square] = pawnAttacks(b, Color.BLACK);
+
+            for (int direction = 0; direction < 8; direction++) {
+                long ray = 0;
+
+                for (int x = squareX(square) + RAY_DX[direction], y = squareY(square) + RAY_DY[direction];
+                     x >= 0 && x < 8 && y >= 0 && y < 8; x += RAY_DX[direction], y += RAY_DY[direction]) {
+                    BETWEEN[square][square(x, y)] = ray;
+                    ray |= bit(square(x, y));
+                }
+                RAYS[direction][square] = ray;
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    static int square(int x, int y) {
+        return x + (y << 3);
+    }
+
+    static int squareX(int square) {
+        return square & 7;
+    }
+
+    static int squareY(int square) {
+        return square >>> 3;
+    }
+
+    static long bit(int square) {
+        return 1L << square;
+    }
+
+    static int pieceIndex(Kind kind, Color color) {
+        return kind.ordinal() + color.ordinal() * 6;
+    }
+
+    static int colorIndex(Color color) {
+        return WHITE_PIECES + color.ordinal();
+    }
+
+    static long knightAttacks(long knights) {
+        long l1 = (knights >>> 1) & ~FILE_H;
+        long l2 = (knights >>> 2) & ~(FILE_G | FILE_H);
+        long r1 = (knights << 1) & ~FILE_A;
+        long r2 = (knights << 2) & ~(FILE_A | FILE_B);
+        long h1 = l1 | r1;
+        long h2 = l2 | r2;
+
+        return (h1 << 16) | (h1 >>> 16) | (h2 << 8) | (h2 >>> 8);
+    }
+
+    static long kingAttacks(long kings) {
+        long attacks = ((kings << 1) & ~FILE_A) | ((kings >>> 1) & ~FILE_H);
+
+        kings |= attacks;
+        return attacks | (kings << 8) | (kings >>> 8);
+    }
+
+    static long pawnAttacks(long pawns, Color color) {
+        if (color == Color.WHITE) {
+            return ((pawns << 7) & ~FILE_H) | ((pawns << 9) & ~FILE_A);
+        }
+        else {
+            return ((pawns >>> 9) & ~FILE_H) | ((pawns >>> 7) & ~FILE_A);
+        }
+    }
+
+    static long knightAttacksFrom(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    static long kingAttacksFrom(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    // поля, которые бьет пешка цвета color, стоящая на square
+    static long pawnAttacksFrom(int square, Color color) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    // луч в сторону увеличения индекса поля: отрезаем все, что за первой фигурой на пути
+    private static long positiveRayAttacks(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+
+        if (blockers != 0) {
+            ray ^= RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+        }
+
+        return ray;
+    }
+
+    // то же в сторону уменьшения индекса: первая фигура на пути - старший бит
+    private static long negativeRayAttacks(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+
+        if (blockers != 0) {
+            ray ^= RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+        }
+
+        return ray;
+    }
+
+    static long rookAttacks(int square, long occupied) {
+        return positiveRayAttacks(NORTH, square, occupied) | positiveRayAttacks(EAST, square, occupied) |
+                negativeRayAttacks(SOUTH, square, occupied) | negativeRayAttacks(WEST, square, occupied);
+    }
+
+    static long bishopAttacks(int square, long occupied) {
+        return positiveRayAttacks(NORTH_EAST, square, occupied) | positiveRayAttacks(NORTH_WEST, square, occupied) |
+                negativeRayAttacks(SOUTH_WEST, square, occupied) | negativeRayAttacks(SOUTH_EAST, square, occupied);
+    }
+
+    // возвращает битборд фигур цвета color, атакующих поле square
+    static long attackers(long[] bitboards, int square, Color color) {
+        return attackers(bitboards, square, color, bitboards[ALL_PIECES]);
+    }
+
+    // то же, но дальнобойные фигуры бьют сквозь поля, не входящие в occupied (например, через поле, с которого уходит король)
+    static long attackers(long[] bitboards, int square, Color color, long occupied) {
+        int base = color.ordinal() * 6;
+        long queens = bitboards[base + Kind.QUEEN.ordinal()];
+        long result;
+
+        result = pawnAttacksFrom(square, color.opposite()) & bitboards[base + Kind.PAWN.ordinal()];
+        result |= KNIGHT_ATTACKS[square] & bitboards[base + Kind.KNIGHT.ordinal()];
+        result |= KING_ATTACKS[square] & bitboards[base + Kind.KING.ordinal()];
+        result |= rookAttacks(square, occupied) & (bitboards[base + Kind.ROOK.ordinal()] | queens);
+        result |= bishopAttacks(square, occupied) & (bitboards[base + Kind.BISHOP.ordinal()] | queens);
+
+        return result;
+    }
+
+    static boolean isSquareAttacked(long[] bitboards, int square, Color color) {
+        return attackers(bitboards, square, color) != 0;
+    }
+
+    // возвращает битборд всех полей, атакованных фигурами цвета color
+    static long attackMap(long[] bitboards, Color color) {
+        int base = color.ordinal() * 6;
+        long occupied = bitboards[ALL_PIECES];
+        long result, pieces;
+
+        result = pawnAttacks(bitboards[base + Kind.PAWN.ordinal()], color);
+        result |= knightAttacks(bitboards[base + Kind.KNIGHT.ordinal()]);
+        result |= kingAttacks(bitboards[base + Kind.KING.ordinal()]);
+        for (pieces = bitboards[base + Kind.ROOK.ordinal()] | bitboards[base + Kind.QUEEN.ordinal()]; pieces != 0; pieces &= pieces - 1) {
+            result |= rookAttacks(Long.numberOfTrailingZeros(pieces), occupied);
+        }
+        for (pieces = bitboards[base + Kind.BISHOP.ordinal()] | bitboards[base + Kind.QUEEN.ordinal()]; pieces != 0; pieces &= pieces - 1) {
+            result |= bishopAttacks(Long.numberOfTrailingZeros(pieces), occupied);
+        }
+
+        return result;
+    }
+}
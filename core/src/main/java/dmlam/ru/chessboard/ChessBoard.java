@@ -0,0 +1,2219 @@
+package dmlam.ru.chessboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dmlam.ru.chessboard.Piece.Color;
+import dmlam.ru.chessboard.Piece.Kind;
+
+import static dmlam.ru.chessboard.ChessBoard.MoveMode.FULL;
+import static dmlam.ru.chessboard.ChessBoard.MoveMode.SIMPLE;
+import static dmlam.ru.chessboard.ChessBoard.MoveMode.TRUSTED;
+import static dmlam.ru.chessboard.Piece.Color.BLACK;
+import static dmlam.ru.chessboard.Piece.Color.WHITE;
+import static dmlam.ru.chessboard.Piece.Kind.PAWN;
+import static java.lang.Math.min;
+
+/**
+ * Created by Lam on 13.06.2015.
+ */
+
+class ErrorIllegalSquareName extends Error {
+    public ErrorIllegalSquareName(String square) { super("Illegal square name " + square); }
+}
+
+class ErrorIllegalFEN extends Error {
+    public ErrorIllegalFEN(String msg) { super(msg); }
+}
+
+class ErrorWaitingForPawnPromotion extends  Error {
+    public ErrorWaitingForPawnPromotion () {
+        super ("Waiting for pawn promotion");
+    }
+}
+
+public class ChessBoard {
+    private static final String LOGTAG = ChessBoard.class.getName();
+    private static final Kind[] KINDS = Kind.values();
+    private static final Color[] COLORS = Color.values();
+
+    public final static String STARTING_POSITION_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private final static int PIECE_POOL_SIZE = 16;  // больше фигур одного вида и цвета на доске не бывает
+    private final static int FIFTY_MOVES = 100;     // правило 50 ходов: 50 ходов каждой стороны без взятий и ходов пешкой
+    private final static int RECENT_MOVES_SIZE = 64;  // сколько последних ходов попадает в отчет о падении
+    private final static String RECENT_MOVES_KEY = "moves";
+    public final static int MAX_MOVES = 256;  // размер буфера для generateMoves (в любой позиции ходов не больше 218)
+    public static boolean FORCE_NEW_MOVE = true;
+
+    public enum MoveMode {SIMPLE, FULL, TRUSTED};  // упрощенный режим ходов без проверки их правильности, сохранения состояния и вызова событий
+                                          // Нужен для преобразования записи вида "e2e4" в краткую нотацию "e4"
+                                          // TRUSTED - ходы из надежного источника (импорт своих PGN): правильность не проверяется,
+                                          // состояние сохраняется, а шах/мат/пат вычисляются только когда они запрошены
+    public enum Castling {QUEEN, KING};
+    public enum PromoteTo {QUEEN, ROOK, BISHOP, KNIGHT;
+
+        public String getNotationLetter() {
+            switch(this) {
+                case QUEEN:
+                    return "Q";
+                case ROOK:
+                    return "R";
+                case BISHOP:
+                    return "B";
+                case KNIGHT:
+                    return "N";
+                default:
+                    return "";
+            }
+        }
+    }
+
+    private MoveMode moveMode = FULL;
+    private OnNeedPieceForTransformation mOnNeedPieceForTransformation;
+    private List<IOnMoveListener> mOnMoveListeners = new ArrayList<>();
+
+    private final RecentMoves recentMoves = new RecentMoves(RECENT_MOVES_SIZE);  // последние ходы этой доски для отчета о падении
+    private boolean recentMovesReported = false;  // recentMoves уже переданы в IDiagnostics
+    private boolean logMoves = true;              // ходы попадают в отчет о падении (не нужно для досок, на которых разбирается PGN)
+
+    private final SanParser sanParser = new SanParser();       // для shortMove и resolveShortMove
+    // буферы для поиска легальных ходов (разбор нотации, неоднозначность хода, проверка мата и пата)
+    private final int[] moveBuffer = new int[MAX_MOVES];
+    private final long[] scratchBitboards = new long[Bitboards.COUNT];
+
+    private String initialPositionFEN = null;
+    private PositionSnapshot initialPosition = null;  // начальная позиция, если она задана не FEN (copy, loadPosition)
+    private long initialPositionHash = 0;  // хеш начальной позиции (для поиска повторений позиции)
+
+    private int updateCount = 0;
+    private ArrayList<Piece> piecesToMove = new ArrayList<>();
+    private boolean piecesToMoveValid = false;  // piecesToMove построен для текущей позиции (строится лениво, см. ensurePiecesToMove)
+    private Piece[][] squares = new Piece[8][8];
+    private boolean piecesPending = false;  // позиция есть только в битбордах, объекты фигур еще не созданы (доска из copy(), см. ensurePieces)
+    private long[] bitboards = new long[Bitboards.COUNT];  // битборды фигур и занятости полей, синхронизируются с squares в setPieceAt
+    private Piece[][] piecePool = new Piece[12][PIECE_POOL_SIZE];  // снятые с доски фигуры по Piece.getID() для повторного использования
+    private int[] piecePoolCount = new int[12];
+    private long[] attackMaps = new long[2];  // поля, атакованные белыми и черными (Bitboards.attackMap), вычисляются по запросу
+    private int attackMapsValid = 0;          // биты 1 << color.ordinal() - карта атак этого цвета соответствует позиции
+    // маски для проверки легальности ходов без пробного хода (см. isMoveLegal), вычисляются по запросу для одного цвета
+    private Color legalityColor = null;       // для какого цвета посчитаны маски, null - маски не соответствуют позиции
+    private long evasionMask;                 // куда можно пойти не королем: все поля, если шаха нет, при шахе - закрыться или взять
+    private long pinnedPieces;                // связанные фигуры
+    private long[] pinRays = new long[64];    // для связанной фигуры - линия, по которой она может ходить (до связывающей фигуры включительно)
+    private int castling = 0;  // флаги возможности рокировок (MoveGenerator.castlingFlag)
+    private int enPassantSquare = -1;  // индекс поля на котором возможно взятие на проходе на текущем ходе (пешка только что прошла через него) или -1
+    private Color moveOrder = WHITE;
+    private long positionHash = 0;  // Zobrist-хеш позиции, поддерживается при каждом изменении позиции
+    private long enPassantKey = 0;  // часть хеша, внесенная полем взятия на проходе
+    private Point promotedPawn = null;  // проведенная пешка если есть
+    private int moveNumber = 1;
+    private int halfmoveQnt = 0; // счетчик количества последних незначащих полуходов (не ходов пешкой и ходов, не являющихся взятием фигуры)
+                                 // необходим для применения правила 50 ходов
+
+    Game game = new Game();
+    private int lastMoveIndex = -1;       // индекс последнего хода в вариантах последнего хода (lastMoveVariants)
+    private Move lastMove = null; // последняя сходившая фигура. Используется для сохранения хода в записи партии после окончания хода
+    private MoveList lastMoveVariants = null;  // список вариантов последнего хода (если был rollback, если нет, то в в lastMoveVariants[0] последний ход)
+
+    private boolean currentPlayerChecked;     // игрок, чья очередь хода находится под шахом
+    private boolean currentPlayerMated;       // игрок, чья очередь хода получил мат
+    private boolean currentPlayerStalemated;  // игрок, чья очередь хода находится в патовой ситуации
+    private boolean checkStateDeferred = false;  // три признака выше и piecesToMove еще не вычислены для текущей позиции (режим TRUSTED)
+    private long sanAmbiguity = 0;            // другие фигуры того же вида, которые могли сделать последний ход (для нотации)
+    private final StringBuilder notationBuilder = new StringBuilder(16);
+    private char transformation = ' ';        // какая фигура появится при превращении пешки если ход делается методом fromtomove
+
+    // стек для отмены ходов, сделанных makeMove
+    private int undoCount = 0;
+    private int[] undoMoves = new int[64];
+    private int[] undoStates = new int[64];                // рокировки | (взятие на проходе + 1) << 4 | halfmoveQnt << 11
+    private Piece[] undoPieces = new Piece[64];            // сходившая фигура (для превращения - пешка)
+    private Piece[] undoTakenPieces = new Piece[64];
+
+    public interface OnNeedPieceForTransformation {
+        void onNeedPieceForTransformation(Point sourceSquare);
+    }
+
+    public static char getLetter(int i) {
+        return (char) ((int) 'a' + i);
+    }
+
+    public static String squareName(int x, int y) { return getLetter(x) + Integer.toString(y + 1); }
+
+    public static String squareName(Point p) {
+        return getLetter(p.x) + Integer.toString(p.y + 1);
+    }
+
+    public void setNextMoveNumber(int nextMoveNumber) {
+
+        this.moveNumber = nextMoveNumber;
+    }
+
+    public static Point getPointFromSquareName(String square) {
+        char xc = square.charAt(0), yc = square.charAt(1);
+        int x = getLetterRow(xc), y = getLetterColumn(yc);
+
+        if (x < 0 || x > 7 || y < 0 || y > 7) {
+            throw new ErrorIllegalSquareName(square);
+        }
+
+        return new Point(x, y);
+    }
+
+    public static int getLetterRow(char c) {
+        return (int) Character.toLowerCase(c) - (int) 'a';
+    }
+
+    public static int getLetterColumn(char c) {
+        return (int) c - (int) '1';
+    }
+
+    public void setOnNeedPieceForTransformation(OnNeedPieceForTransformation l) {
+        mOnNeedPieceForTransformation = l;
+    }
+
+    public void addOnMoveListener(IOnMoveListener l) {
+        mOnMoveListeners.add(l);
+    }
+
+    public void deleteOnMoveListener(IOnMoveListener l) {
+        mOnMoveListeners.remove(l);
+    }
+
+    public Piece getPiece(int x, int y) {
+        ensurePieces();
+        return squares[x][y];
+    }
+
+    public Piece getPiece(Point point) { return getPiece(point.x, point.y); };
+
+    public void setPieceAt(int x, int y, Piece piece) {
+        ensurePieces();
+
+        Piece oldPiece = squares[x][y];
+
+        if (oldPiece != piece) {
+            int square = Bitboards.square(x, y);
+            long b = Bitboards.bit(square);
+
+            attackMapsValid = 0;
+            legalityColor = null;
+
+            if (oldPiece != null) {
+                positionHash ^= Zobrist.piece(oldPiece.getID(), square);
+                bitboards[oldPiece.getID()] &= ~b;
+                bitboards[Bitboards.colorIndex(oldPiece.getColor())] &= ~b;
+                bitboards[Bitboards.ALL_PIECES] &= ~b;
+            }
+
+            squares[x][y] = piece;
+            if (piece != null) {
+                piece.setXY(x, y);
+
+                positionHash ^= Zobrist.piece(piece.getID(), square);
+                bitboards[piece.getID()] |= b;
+                bitboards[Bitboards.colorIndex(piece.getColor())] |= b;
+                bitboards[Bitboards.ALL_PIECES] |= b;
+            }
+        }
+    }
+
+    long[] getBitboards() {
+        return bitboards;
+    }
+
+    // 64-битный хеш (Zobrist) позиции: расположение фигур, очередь хода, возможность рокировок и взятия на проходе
+    public long getPositionHash() {
+        return positionHash;
+    }
+
+    // хеш позиции, вычисленный заново, без учета инкрементальных изменений
+    long calculatePositionHash() {
+        long result = moveOrder == BLACK ? Zobrist.BLACK_TO_MOVE : 0;
+
+        for (int piece = 0; piece < 12; piece++) {
+            for (long b = bitboards[piece]; b != 0; b &= b - 1) {
+                result ^= Zobrist.piece(piece, Long.numberOfTrailingZeros(b));
+            }
+        }
+
+        return result ^ Zobrist.castling(castling) ^ enPassantKey;
+    }
+
+    void setPieceAt(Point point, Piece piece) {
+        setPieceAt(point.x, point.y, piece);
+    }
+
+    public void setMoveMode(MoveMode mode) {
+        if (moveMode != mode) {
+            if (game.getMoves().size() > 0) {
+                throw new RuntimeException("MoveMode may be set only when non moves have been done");
+            }
+
+            moveMode = mode;
+        }
+    }
+
+    MoveMode getMoveMode() {
+        return moveMode;
+    }
+
+    // forceNewVariant = true - если необходимо создать новый вариант, даже если в вариантах продолжения текущего хода уже есть такой ход
+    boolean movePieceTo(Piece piece, int x, int y, boolean forceNewVariant) {
+        ensurePieces();
+
+        Point sourceSquare = piece.getXY();
+
+        if (isInPawnPromotion())
+        {
+            // возбудим здесь исключение, т.к. есть пешка, проведенная до последней горизонтали и нам нужна реакция на это событие -
+            // либо указать фигуру, в которую она должна превратиться (promotePawnTo), либо отменить ход (cancelPawnPromotion)
+            throw new ErrorWaitingForPawnPromotion();
+        }
+
+        boolean result = moveMode == FULL ? isMovePossible(piece, x, y) : true;  // в упрощенном режиме ходов не проверяем корректность хода
+
+        if (result) {
+            // неоднозначность хода для нотации определяется до хода, пока фигуры стоят на своих местах
+            sanAmbiguity = getSanAmbiguity(piece, Bitboards.square(x, y));
+
+            // очищаем признак возможности взятия на проходе
+            setEnPassantIndex(-1);
+
+            // убираем фигуру с клетки где она находилась
+            setPieceAt(piece.getX(), piece.getY(), null);
+
+            // если на новой клетке уже что-то есть, то это взятие и нужно сбросить счетчик нерезультативных ходов (для правила 50-ти ходов)
+            // аналогично, если ход пешкой
+            if ( squares[x][y] != null || piece.getKind() == PAWN)
+            {
+                halfmoveQnt = -1;  // -1 т.к. в passMoveToOpponent счетчик будет увеличен на 1
+            }
+            // если взята ладья на своем начальном поле, то соответствующая рокировка становится невозможной
+            if (squares[x][y] != null) {
+                setCastling(castling & ~castlingLostBy(Bitboards.square(x, y)));
+            }
+            // ход ладьей со своего начального поля делает соответствующую рокировку невозможной.
+            // Поле проверяем до хода: после moveTo фигура уже стоит на новом месте
+            setCastling(castling & ~castlingLostBy(Bitboards.square(sourceSquare.x, sourceSquare.y)));
+            // ставим на новую клетку
+            piece.moveTo(x, y);
+            lastMove = piece.lastMove;
+            setPieceAt(x, y, piece);
+
+            if (piece.getKind() == Kind.KING) {
+                // если ход королем, то установим невозможность рокировок и если это собственно рокировка - двинем и соответствующую ладье тоже
+                setCastlingPossible(piece.getColor(), Castling.KING, false);
+                setCastlingPossible(piece.getColor(), Castling.QUEEN, false);
+                passMoveToOpponent(forceNewVariant);
+
+
+            } else if (piece.getKind() == PAWN && (transformation != ' ' || mOnNeedPieceForTransformation != null)) {
+                // проверим, не дошла ли пешка до последней горизонтали и если да - превратим в фигуру
+                int lastLine = -1;
+                switch (piece.getColor()) {
+                    case WHITE:
+                        lastLine = 7;
+                        break;
+                    case BLACK:
+                        lastLine = 0;
+                        break;
+                }
+                if (y == lastLine) {
+                    // ура, мы прошли!
+                    promotedPawn = new Point(x, y);
+                    // если ход делался методом fromtomove, то фигура превращения может быть указана в transformation
+                    if (transformation != ' ') {
+                        switch (Character.toUpperCase(transformation)) {
+                            case 'N':
+                                promotePawnTo(sourceSquare, PromoteTo.KNIGHT, forceNewVariant);
+                                break;
+                            case 'B':
+                                promotePawnTo(sourceSquare, PromoteTo.BISHOP, forceNewVariant);
+                                break;
+                            case 'R':
+                                promotePawnTo(sourceSquare, PromoteTo.ROOK, forceNewVariant);
+                                break;
+                            case 'Q':
+                                promotePawnTo(sourceSquare, PromoteTo.QUEEN, forceNewVariant);
+                                break;
+                            default:
+                                result = false;
+                        }
+                    }
+                    else {
+                        // иначе ждем реакции на проведение пешки - должна быть вызвана либо promotePawnTo, либо cancelPawnPromotion
+                        // иначе при любой попытке хода будет возбуждено исключение
+                        mOnNeedPieceForTransformation.onNeedPieceForTransformation(sourceSquare);
+                    }
+                }
+                else {
+                    // если пешка не превращается в фигуру - меняем очередь хода.
+                    // иначе поменяем когда будет выбрана фигура для превращения (т.к., ход может быть отменен)
+                    passMoveToOpponent(forceNewVariant);
+                }
+            }
+            else {
+                passMoveToOpponent(forceNewVariant);
+            }
+        }
+
+        return result;
+    }
+
+    boolean movePieceTo(Piece piece, Point target) {
+        return movePieceTo(piece, target, false);
+    }
+
+    boolean movePieceTo(Piece piece, Point target, boolean forceNewVariant) {
+        return movePieceTo(piece, target.x, target.y, forceNewVariant);
+    }
+
+    boolean movePieceTo(Piece piece, Point target, PromoteTo pawnPromotion) {
+        if (pawnPromotion != null) {
+            switch (pawnPromotion) {
+                case KNIGHT:
+                    transformation = 'N';
+                    break;
+                case BISHOP:
+                    transformation = 'B';
+                    break;
+                case ROOK:
+                    transformation = 'R';
+                    break;
+                case QUEEN:
+                    transformation = 'Q';
+                    break;
+            }
+        }
+
+        return movePieceTo(piece, target);
+    }
+
+    public int getMoveablePiecesCount() {
+        ensurePiecesToMove();
+        return piecesToMove.size();
+    }
+
+    public Piece getMoveablePiece(int index) {
+        ensurePiecesToMove();
+        return piecesToMove.get(index);
+    }
+
+    // ход в записи вроде "d2d4" или "с7с8q"
+    public boolean fromtomove(String fromtoMove) {
+        return fromtomove(fromtoMove, false);
+    }
+
+    public boolean fromtomove(String fromtoMove, boolean forceNewVariant) {
+        boolean result = false;
+
+        ensurePieces();
+        if (fromtoMove.length() == 5) {
+            transformation = fromtoMove.charAt(4);
+        }
+        if (fromtoMove.length() == 4 || fromtoMove.length() == 5) {
+            Point p = getPointFromSquareName(fromtoMove.substring(0, 2));
+            Piece piece = squares[p.x][p.y];
+
+            if (piece != null) {
+                result = movePieceTo(piece, getPointFromSquareName(fromtoMove.substring(2, 4)), forceNewVariant);
+            }
+        }
+
+        return result;
+    }
+
+    private void checkForCheckCheckmateStalemate() {
+        checkStateDeferred = false;
+        currentPlayerChecked = isInCheck(moveOrder);
+
+        // для мата и пата достаточно найти хотя бы один легальный ход, список фигур с их ходами строится только по запросу
+        // признаки присваиваются всегда: restoreSnapshot не очищает доску, и после мата в предыдущей позиции они остались бы взведены
+        clearPiecesToMove();
+        boolean noMoves = !hasAnyLegalMove();
+        currentPlayerMated = noMoves && currentPlayerChecked;
+        currentPlayerStalemated = noMoves && !currentPlayerChecked;
+    }
+
+    public void restoreBoardState(Move move) {
+        restoreSnapshot(move.getSnapshot());
+
+        if (moveOrder == WHITE) {
+            moveNumber++;
+        }
+    }
+
+    private void gotoInitialPosition() {
+        if (initialPositionFEN == null && initialPosition != null) {
+            // FEN начальной позиции копии доски строим только при первом переходе к ней
+            initialPositionFEN = initialPosition.toFEN();
+        }
+        loadFromFEN(initialPositionFEN, true);
+    }
+
+    // откат к предыдущему ходу
+    public void rollback(int variantIndex) {
+        if (moveMode == SIMPLE) {
+            throw new RuntimeException("Rollback/Rollup/Goto are not enabled in simple mode");
+        }
+
+        if (lastMoveVariants != null && lastMoveVariants.size() > 0) {
+            Move lastMove;
+
+            lastMove = getLastMove();
+            lastMoveVariants = lastMove.getPrevVariants();
+            lastMoveIndex = -1;
+
+            if (lastMoveVariants != null || variantIndex > 0) {
+                // if current move is the first and variant index is defferent from 0 then we'll got the 'index out of range' exception
+                lastMoveIndex = variantIndex;
+                lastMove = lastMoveVariants.get(lastMoveIndex);
+
+                restoreBoardState(lastMove);
+            }
+            else {
+                beginUpdate();
+                try {
+                    gotoInitialPosition();
+                    lastMoveVariants = null;
+                }
+                finally {
+                    endUpdate();
+                }
+
+            }
+
+            doOnRollback(lastMove);
+        }
+    }
+
+    // откат к предыдущему ходу (из основной ветки)
+    public void rollback() {
+        if (moveMode == SIMPLE) {
+            throw new RuntimeException("Rollback/Rollup/Goto are not enabled in simple mode");
+        }
+
+        if (lastMoveVariants != null && lastMoveVariants.size() > 0) {
+            Move lastMove;
+
+            lastMove = getLastMove();
+            lastMoveVariants = lastMove.getPrevVariants();
+            lastMoveIndex = -1;
+            if (lastMoveVariants != null) {
+                lastMoveIndex = lastMoveVariants.indexOf(lastMove.getPrevMove());
+                if (lastMoveIndex == -1) {
+                    lastMoveIndex = 0;
+                }
+                lastMove = lastMoveVariants.get(lastMoveIndex);
+
+                restoreBoardState(lastMove);
+                doOnBoardChange();
+            }
+            else {
+                beginUpdate();
+                try {
+                    gotoInitialPosition();
+                    lastMoveVariants = null;
+                }
+                finally {
+                    endUpdate(true);
+                }
+
+            }
+            doOnRollback(lastMove);
+        }
+    }
+
+    // возврат хода
+    public void rollup(int variantIndex) {
+        Move nextMove = null;
+
+        if (moveMode == SIMPLE) {
+            throw new RuntimeException("Rollback/Rollup/Goto are not enabled in simple mode");
+        }
+
+        if (lastMoveVariants == null) {
+            if (!game.getMoves().isEmpty()) {
+                lastMoveVariants = game.getMoves();
+                nextMove = lastMoveVariants.get(variantIndex);
+            }
+        }
+        else {
+            nextMove = getLastMove().getVariants(variantIndex);
+            if (nextMove != null)
+                lastMoveVariants = getLastMove().getVariants();  // установим текущий ход в качестве основного варианта после предыдущего, к которому можно будет вернуться с помощью rollup()
+        }
+
+        if (nextMove != null) {
+            lastMoveIndex = variantIndex;
+
+            restoreBoardState(nextMove);
+
+            doOnBoardChange();
+            doOnRollup(nextMove);
+        }
+    }
+
+    // возврат хода из основной линии
+    public void rollup() {
+        rollup(0);
+    }
+
+    public void moveVariantUp(Move move) {
+        Move prevMove = move.getPrevMove();
+
+        if (prevMove != null) {
+            MoveList variants = prevMove.getVariants();
+            if (variants != null) {
+                int index = variants.indexOf(move);
+
+                if (variants.size() > 1 && index > 0) {
+                    variants.remove(index);
+                    variants.add(index - 1, move);
+                }
+            }
+        }
+    }
+
+    public void moveVariantDown(Move move) {
+        Move prevMove = move.getPrevMove();
+
+        if (prevMove != null) {
+            MoveList variants = prevMove.getVariants();
+            if (variants != null) {
+                int index = variants.indexOf(move);
+
+                if (variants.size() > 1 && index < variants.size() - 1) {
+                    variants.remove(index);
+                    variants.add(index + 1, move);
+                }
+            }
+        }
+    }
+
+    public void gotoMove(Move move) {
+        if (moveMode == SIMPLE) {
+            throw new RuntimeException("Rollback/Rollup/Goto are not enabled in simple mode");
+        }
+
+        if (move != null) {
+            beginUpdate();
+            try {
+                MoveList saveFirstMoveVariants = game.getMoves();
+                Move prevMove = move.getPrevMove();
+
+                restoreBoardState(move);
+
+                game.setMoves(saveFirstMoveVariants);
+                if (prevMove != null) {
+                    lastMoveVariants = prevMove.getVariants();
+                } else {
+                    lastMoveVariants = game.getMoves();
+                }
+                lastMoveIndex = lastMoveVariants.indexOf(move);
+
+                doOnGoto(move);
+            }
+            finally {
+                endUpdate();
+            }
+        }
+    }
+
+    // переход в позицию после хода с идентификатором Id
+    public void gotoMove(int Id) {
+        if (moveMode == SIMPLE) {
+            throw new RuntimeException("Rollback/Rollup/Goto are not enabled in simple mode");
+        }
+
+        Move move = findMove(Id);
+
+        if (move == null) {
+            throw new RuntimeException(String.format("Invalid move id (%d)", Id));
+        }
+
+        gotoMove(move);
+    }
+
+    // переход на полуход number от начала партии
+    public void gotoMoveNumber(int number) {
+        if (moveMode == SIMPLE) {
+            throw new RuntimeException("Rollback/Rollup/Goto are not enabled in simple mode");
+        }
+
+        if (number < 0) {
+            throw new RuntimeException("Invalid move number");
+        }
+
+        // проверим, что уже был сделан хотя бы один ход
+        if (!game.getMoves().isEmpty()) {
+            gotoInitialPosition();
+
+            Move move = game.getMoves().get(0);
+            while (number > 1) {
+                number--;
+                move = move.getMainVariant();
+            }
+            gotoMove(move);
+        }
+    }
+
+    public MoveList getLastMoveVariants() {
+        return lastMoveVariants;
+    }
+
+    public Move getLastMoveVariants(int variantNumber) {
+        return lastMoveVariants.get(variantNumber);
+    }
+
+    public MoveList getFirstMoveVariants() {
+        return game.getMoves();
+    }
+
+    public Move getFirstMoveVariants(int variantNumber) {
+        return game.getMoves().get(variantNumber);
+    }
+
+    public int getLastMoveIndex() {
+        return lastMoveIndex;
+    }
+
+    public Move getLastMove() {
+        if (lastMoveVariants == null || lastMoveVariants.size() == 0 || lastMoveIndex == -1) {
+            return null;
+        }
+        else {
+            return lastMoveVariants.get(lastMoveIndex);
+        }
+    }
+
+    public void removeMove(Move move) {
+        if (move != null) {
+            Move lastMove = getLastMove();
+
+            if (lastMove != null) {
+                Move prevMove = move.getPrevMove();
+
+                if (prevMove != null) {
+                    MoveList variants = prevMove.getVariants();
+
+                    if (move != lastMove) {
+                        if (variants.size() > 1 || variants.get(0).getVariantCount() == 0) {
+                            variants.removeLine(move);
+                            game.onLineRemoved(move);
+                        }
+                    } else {
+                        lastMoveVariants = move.getPrevVariants();
+                        lastMoveIndex = Math.max(0, lastMoveVariants.indexOf(prevMove));
+                        variants.removeLine(move);
+                        game.onLineRemoved(move);
+                    }
+                }
+            }
+        }
+    }
+
+    public Color getMoveOrder() {
+        return moveOrder;
+    }
+
+    public void setMoveOrder(Color moveOrder) {
+        if (this.moveOrder != moveOrder) {
+            positionHash ^= Zobrist.BLACK_TO_MOVE;
+            this.moveOrder = moveOrder;
+        }
+    }
+
+    public int getMoveNumber() {
+        return moveNumber;
+    }
+
+    public void setMoveNumber(int moveNumber) {
+        this.moveNumber = moveNumber;
+    }
+
+    public int getHalfmoveQnt() {
+        return halfmoveQnt;
+    }
+
+    public boolean isInPawnPromotion() {
+        return promotedPawn != null;
+    }
+
+    public boolean promotePawnTo(Point sourceSquare, PromoteTo piece, boolean forceNewVariant) {
+        boolean result;
+
+        PawnPiece pawn = (PawnPiece) getPiece(promotedPawn);
+
+        pawn.promoteTo(sourceSquare, piece);
+
+        halfmoveQnt = -1; // -1 т.к. в passMoveToOpponent счетчик будет увеличен на 1
+        result = passMoveToOpponent(forceNewVariant);
+        promotedPawn = null;
+
+        return result;
+    }
+
+    public void cancelPawnPromotion() {
+        if (promotedPawn != null) {
+            int prevLine =  promotedPawn.y == 0 ? 1 : 6;
+            obtainPiece(PAWN, moveOrder, promotedPawn.x, prevLine);
+        }
+    }
+
+    public void SetupInitialPosition(){
+        loadFromFEN("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", false);
+    }
+
+    public boolean isCastlingPossible(Color color, Castling castling) {
+        boolean result = (this.castling & MoveGenerator.castlingFlag(color, castling)) != 0;
+
+        return result;
+    }
+
+    private void logMove(Move move) {
+        IDiagnostics diagnostics = Diagnostics.get();
+
+        // если задача еще загружается, то ходы не логгируем
+        if (diagnostics.getCustomData("start loading problem") == null) {
+            recentMoves.add(move);
+            if (!recentMovesReported) {
+                // буфер передается один раз. В отчет попадают ходы доски, на которой начали ходить последней
+                recentMovesReported = true;
+                diagnostics.putLazyData(RECENT_MOVES_KEY, recentMoves);
+            }
+        }
+    }
+
+    // включает или отключает лог ходов для отчета о падении
+    void setLogMoves(boolean logMoves) {
+        this.logMoves = logMoves;
+    }
+
+    private void setCastlingPossible(Color color, Castling castling, boolean possible) {
+        if (possible) {
+            setCastling(this.castling | MoveGenerator.castlingFlag(color, castling));
+        }
+        else {
+            setCastling(this.castling & ~MoveGenerator.castlingFlag(color, castling));
+        }
+    }
+
+    private void setCastling(int castling) {
+        positionHash ^= Zobrist.castling(this.castling) ^ Zobrist.castling(castling);
+        this.castling = castling;
+    }
+
+    // рокировки, которые становятся невозможны после хода с поля или на поле square (ход королем или ладьей, взятие ладьи)
+    static int castlingLostBy(int square) {
+        switch (square) {
+            case 0:
+                return MoveGenerator.WHITE_QUEEN_CASTLING;
+            case 4:
+                return MoveGenerator.WHITE_QUEEN_CASTLING | MoveGenerator.WHITE_KING_CASTLING;
+            case 7:
+                return MoveGenerator.WHITE_KING_CASTLING;
+            case 56:
+                return MoveGenerator.BLACK_QUEEN_CASTLING;
+            case 60:
+                return MoveGenerator.BLACK_QUEEN_CASTLING | MoveGenerator.BLACK_KING_CASTLING;
+            case 63:
+                return MoveGenerator.BLACK_KING_CASTLING;
+            default:
+                return 0;
+        }
+    }
+
+    public boolean isMovePossible(Piece piece, Point p) {
+        return isMovePossible(piece, p.x, p.y);
+    }
+
+    public boolean isMovePossible(Piece piece, int x, int y) {
+        boolean result = !currentPlayerMated && !currentPlayerStalemated;
+
+        ensurePieces();
+        if (result) {
+            Piece targetPiece = squares[x][y];
+
+            // проверим очередь хода
+            result = piece.getColor() == moveOrder;
+
+            if (result) {
+                if (x < 0 || x > 7 || y < 0 || y > 7) {
+                    // проверим выход за переделы доски
+                    result = false;
+                } else if (targetPiece != null) {
+                    // если на поле куда идем находится фигура, то она не должна быть своего цвета и это не должен быть король
+                    if (targetPiece.getColor() == piece.getColor()) {
+                        // нельзя ходить на клетку, где находится фигура того же цвета
+                        result = false;
+                    } else {
+                        // нельзя взять короля
+                        if (targetPiece.getKind() == Kind.KING) {
+                            result = false;
+                        }
+                    }
+                }
+
+                if (result) {
+                    result = piece.isMovePossible(x, y);
+
+                    if (result) {
+                        // если свой король окажется под шахом после хода - ход невозможен
+                        result = isMoveLegal(piece, x, y);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public int generateAvailableMoves(Color color) {
+        int result = 0;
+
+        ensurePieces();
+        beginUpdate();
+        try {
+            clearPiecesToMove();
+
+            // перебираем только фигуры цвета color по битборду (копия, т.к. при проверке ходов фигуры временно переставляются)
+            for (long pieces = bitboards[Bitboards.colorIndex(color)]; pieces != 0; pieces &= pieces - 1) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                Piece piece = squares[Bitboards.squareX(square)][Bitboards.squareY(square)];
+                int count = piece.generateAvailableMoves();
+
+                if (count > 0 ) {
+                    result += count;
+                    piecesToMove.add(piece);
+                }
+            }
+            piecesToMoveValid = color == moveOrder;
+        }
+        finally {
+            endUpdate(false);
+        }
+
+        return result;
+    }
+
+    // есть ли у стороны, чья очередь хода, хотя бы один легальный ход. Перебор ходов прекращается на первом легальном
+    public boolean hasAnyLegalMove() {
+        return MoveGenerator.hasLegalMove(bitboards, moveOrder, castling, enPassantSquare, moveBuffer, scratchBitboards);
+    }
+
+    // генерирует псевдолегальные ходы (см. PackedMove) стороны, чья очередь хода, в буфер moves. Возвращает количество ходов.
+    // Буфер должен вмещать MAX_MOVES ходов
+    public int generateMoves(int[] moves) {
+        return MoveGenerator.generate(bitboards, moveOrder, castling, enPassantSquare, moves, 0);
+    }
+
+    // то же, что generateMoves, но оставляет в буфере только ходы, после которых свой король не находится под шахом
+    public int generateLegalMoves(int[] moves) {
+        int count = generateMoves(moves);
+        int result = 0;
+        Color color = moveOrder;
+
+        for (int i = 0; i < count; i++) {
+            makeMove(moves[i]);
+            if (!isInCheck(color)) {
+                moves[result++] = moves[i];
+            }
+            unmakeMove();
+        }
+
+        return result;
+    }
+
+    // делает ход, полученный от generateMoves. Ход не проверяется, не записывается в партию и не вызывает событий,
+    // меняется только позиция (включая очередь хода, рокировки, взятие на проходе и счетчики ходов).
+    // Каждому makeMove должен соответствовать unmakeMove
+    public void makeMove(int move) {
+        ensurePieces();
+
+        int from = PackedMove.getFrom(move), to = PackedMove.getTo(move);
+        int fromX = Bitboards.squareX(from), fromY = Bitboards.squareY(from);
+        int toX = Bitboards.squareX(to), toY = Bitboards.squareY(to);
+        Piece piece = squares[fromX][fromY];
+        Piece takenPiece;
+
+        if (undoCount == undoMoves.length) {
+            growUndoStack();
+        }
+
+        if (PackedMove.isEnPassant(move)) {
+            // взятая на проходе пешка стоит на той же горизонтали, откуда пошла берущая пешка
+            takenPiece = squares[toX][fromY];
+            setPieceAt(toX, fromY, null);
+        }
+        else {
+            takenPiece = squares[toX][toY];
+        }
+
+        undoMoves[undoCount] = move;
+        undoStates[undoCount] = castling | ((enPassantSquare + 1) << 4) | (halfmoveQnt << 11);
+        undoPieces[undoCount] = piece;
+        undoTakenPieces[undoCount] = takenPiece;
+        undoCount++;
+
+        setPieceAt(fromX, fromY, null);
+        setPieceAt(toX, toY, piece);
+
+        if (PackedMove.isPromotion(move)) {
+            obtainPiece(PackedMove.getPromotion(move), piece.getColor(), toX, toY);
+        }
+        else if (PackedMove.isCastling(move)) {
+            int rookX = toX > fromX ? 7 : 0, newRookX = toX > fromX ? 5 : 3;
+            Piece rook = squares[rookX][fromY];
+
+            setPieceAt(rookX, fromY, null);
+            setPieceAt(newRookX, fromY, rook);
+        }
+
+        setEnPassantIndex((move & PackedMove.DOUBLE_PAWN_MOVE) != 0 ? (from + to) >> 1 : -1);
+        setCastling(castling & ~(castlingLostBy(from) | castlingLostBy(to)));
+        if (takenPiece != null || PackedMove.getKind(move) == PAWN) {
+            halfmoveQnt = 0;
+        }
+        else {
+            halfmoveQnt++;
+        }
+        if (moveOrder == BLACK) {
+            moveNumber++;
+        }
+        setMoveOrder(moveOrder.opposite());
+    }
+
+    // отменяет последний ход, сделанный makeMove
+    public void unmakeMove() {
+        undoCount--;
+
+        int move = undoMoves[undoCount], state = undoStates[undoCount];
+        int from = PackedMove.getFrom(move), to = PackedMove.getTo(move);
+        int fromX = Bitboards.squareX(from), fromY = Bitboards.squareY(from);
+        int toX = Bitboards.squareX(to), toY = Bitboards.squareY(to);
+        Piece piece = undoPieces[undoCount], takenPiece = undoTakenPieces[undoCount];
+
+        undoPieces[undoCount] = null;
+        undoTakenPieces[undoCount] = null;
+
+        setMoveOrder(moveOrder.opposite());
+        if (moveOrder == BLACK) {
+            moveNumber--;
+        }
+
+        if (PackedMove.isCastling(move)) {
+            int rookX = toX > fromX ? 7 : 0, newRookX = toX > fromX ? 5 : 3;
+            Piece rook = squares[newRookX][fromY];
+
+            setPieceAt(newRookX, fromY, null);
+            setPieceAt(rookX, fromY, rook);
+        }
+
+        // при превращении на поле стоит новая фигура, вместо нее возвращаем пешку
+        if (PackedMove.isPromotion(move)) {
+            poolPiece(squares[toX][toY]);
+        }
+        setPieceAt(toX, toY, null);
+        setPieceAt(fromX, fromY, piece);
+
+        if (takenPiece != null) {
+            if (PackedMove.isEnPassant(move)) {
+                setPieceAt(toX, fromY, takenPiece);
+            }
+            else {
+                setPieceAt(toX, toY, takenPiece);
+            }
+        }
+
+        setCastling(state & 0xF);
+        setEnPassantIndex(((state >> 4) & 0x7F) - 1);
+        halfmoveQnt = state >> 11;
+    }
+
+    // количество позиций, получающихся из текущей через depth полуходов (perft). Используется для проверки генератора ходов
+    public long perft(int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+
+        return perft(depth, new int[depth + 1][MAX_MOVES]);
+    }
+
+    private long perft(int depth, int[][] buffers) {
+        int[] moves = buffers[depth];
+        int count = generateLegalMoves(moves);
+        long result = 0;
+
+        if (depth == 1) {
+            return count;
+        }
+
+        for (int i = 0; i < count; i++) {
+            makeMove(moves[i]);
+            result += perft(depth - 1, buffers);
+            unmakeMove();
+        }
+
+        return result;
+    }
+
+    // perft отдельно для каждого хода из текущей позиции: ход в записи вроде "e2e4" -> количество позиций
+    public Map<String, Long> divide(int depth) {
+        Map<String, Long> result = new LinkedHashMap<>();
+
+        if (depth > 0) {
+            int[][] buffers = new int[depth + 1][MAX_MOVES];
+            int[] moves = buffers[depth];
+            int count = generateLegalMoves(moves);
+
+            for (int i = 0; i < count; i++) {
+                makeMove(moves[i]);
+                result.put(PackedMove.toString(moves[i]), depth == 1 ? 1 : perft(depth - 1, buffers));
+                unmakeMove();
+            }
+        }
+
+        return result;
+    }
+
+    private void growUndoStack() {
+        int size = undoMoves.length * 2;
+
+        undoMoves = Arrays.copyOf(undoMoves, size);
+        undoStates = Arrays.copyOf(undoStates, size);
+        undoPieces = Arrays.copyOf(undoPieces, size);
+        undoTakenPieces = Arrays.copyOf(undoTakenPieces, size);
+    }
+
+    public boolean getPlayerChecked(Color color) {
+        return getMoveOrder() == color && currentPlayerChecked;
+    }
+
+    public boolean getPlayerCheckmated(Color color) {
+        return getMoveOrder() == color && currentPlayerMated;
+    }
+
+    // не окажется ли свой король под шахом после хода piece на (x, y). Ход должен быть физически возможен.
+    // Пробный ход делается только для взятия на проходе, остальные ходы проверяются по маскам связок и защиты от шаха
+    boolean isMoveLegal(Piece piece, int x, int y) {
+        Color color = piece.getColor();
+        int from = Bitboards.square(piece.getX(), piece.getY()), to = Bitboards.square(x, y);
+
+        if (piece.getKind() == Kind.KING) {
+            // поле не должно быть под боем, в том числе по линии, которую король закрывал собой
+            return Bitboards.attackers(bitboards, to, color.opposite(), bitboards[Bitboards.ALL_PIECES] & ~Bitboards.bit(from)) == 0;
+        }
+        if (piece.getKind() == PAWN && to == enPassantSquare && x != piece.getX()) {
+            boolean result;
+
+            beginUpdate();
+            try {
+                piece.testMoveTo(x, y);
+                result = !isInCheck(color);
+                piece.testMoveRollback();
+            } finally {
+                endUpdate(false);
+            }
+
+            return result;
+        }
+
+        if (legalityColor != color) {
+            updateLegalityMasks(color);
+        }
+
+        long target = Bitboards.bit(to);
+
+        return (evasionMask & target) != 0 &&
+                ((pinnedPieces & Bitboards.bit(from)) == 0 || (pinRays[from] & target) != 0);
+    }
+
+    private void updateLegalityMasks(Color color) {
+        long king = bitboards[Bitboards.pieceIndex(Kind.KING, color)];
+
+        evasionMask = -1L;
+        pinnedPieces = 0;
+        legalityColor = color;
+
+        if (king == 0) {
+            return;  // без короля любой ход легален
+        }
+
+        Color enemy = color.opposite();
+        int kingSquare = Long.numberOfTrailingZeros(king);
+        long occupied = bitboards[Bitboards.ALL_PIECES];
+        long checkers = Bitboards.attackers(bitboards, kingSquare, enemy);
+
+        if (checkers != 0) {
+            // от одиночного шаха можно закрыться или взять шахующую фигуру, от двойного - только уйти королем
+            evasionMask = Long.bitCount(checkers) == 1 ?
+                    checkers | Bitboards.between(kingSquare, Long.numberOfTrailingZeros(checkers)) : 0;
+        }
+
+        // дальнобойные фигуры противника на одной линии с королем (без учета фигур между ними)
+        int base = enemy.ordinal() * 6;
+        long queens = bitboards[base + Kind.QUEEN.ordinal()];
+        long snipers = (Bitboards.rookAttacks(kingSquare, 0) & (bitboards[base + Kind.ROOK.ordinal()] | queens)) |
+                (Bitboards.bishopAttacks(kingSquare, 0) & (bitboards[base + Kind.BISHOP.ordinal()] | queens));
+
+        for (; snipers != 0; snipers &= snipers - 1) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            long between = Bitboards.between(kingSquare, sniper);
+            long blockers = between & occupied;
+
+            // единственная фигура между королем и дальнобойной фигурой противника, и она своя - связка
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0 && (blockers & bitboards[Bitboards.colorIndex(color)]) != 0) {
+                pinnedPieces |= blockers;
+                pinRays[Long.numberOfTrailingZeros(blockers)] = between | Bitboards.bit(sniper);
+            }
+        }
+    }
+
+    // Возвращает true, если король игрока color находится под шахом
+    boolean isInCheck(Color color) {
+        long king = bitboards[Bitboards.pieceIndex(Kind.KING, color)];  // битборд короля и есть его поле
+        Color enemy = color.opposite();
+
+        // короля может и не быть (может быть это просто какая-то расстановка без короля)
+        if (king == 0) {
+            return false;
+        }
+        // после makeMove карта атак еще не построена - одного поля короля дешевле проверить напрямую
+        if ((attackMapsValid & (1 << enemy.ordinal())) != 0) {
+            return (attackMaps[enemy.ordinal()] & king) != 0;
+        }
+        return Bitboards.isSquareAttacked(bitboards, Long.numberOfTrailingZeros(king), enemy);
+    }
+
+    // поля, атакованные фигурами цвета color. Карта строится один раз для позиции и сбрасывается при любом изменении фигур
+    long getAttackMap(Color color) {
+        int flag = 1 << color.ordinal();
+
+        if ((attackMapsValid & flag) == 0) {
+            attackMaps[color.ordinal()] = Bitboards.attackMap(bitboards, color);
+            attackMapsValid |= flag;
+        }
+
+        return attackMaps[color.ordinal()];
+    }
+
+    public boolean isSquareThreaten(int x, int y, Color color) {
+        return (getAttackMap(color) & Bitboards.bit(Bitboards.square(x, y))) != 0;
+    }
+
+    public void beginUpdate() {
+        updateCount++;
+    }
+
+    public void endUpdate() {
+        endUpdate(true);
+    }
+
+    public void endUpdate(boolean doOnChange) {
+        updateCount--;
+
+        if (doOnChange && updateCount == 0) {
+            doOnBoardChange();
+        }
+    }
+
+    public String saveToFEN() {
+        return takeSnapshot().toFEN();
+    }
+
+    // копия доски с той же позицией, но без слушателей и дерева ходов - для независимого анализа вариантов, в том числе в другом потоке
+    // (создавать копию нужно в потоке исходной доски). Копируются только битборды и состояние позиции, FEN не разбирается и не строится;
+    // объекты фигур создаются из пула при первом обращении к ним. Признаки шаха, мата и пата копируются, а не вычисляются заново
+    public ChessBoard copy() {
+        ChessBoard result = new ChessBoard();
+
+        System.arraycopy(bitboards, 0, result.bitboards, 0, bitboards.length);
+        result.piecesPending = bitboards[Bitboards.ALL_PIECES] != 0;
+        result.moveMode = moveMode;
+        result.logMoves = logMoves;
+        result.moveOrder = moveOrder;
+        result.castling = castling;
+        result.enPassantSquare = enPassantSquare;
+        result.enPassantKey = enPassantKey;
+        result.positionHash = positionHash;
+        result.halfmoveQnt = halfmoveQnt;
+        result.moveNumber = moveNumber;
+
+        result.currentPlayerChecked = currentPlayerChecked;
+        result.currentPlayerMated = currentPlayerMated;
+        result.currentPlayerStalemated = currentPlayerStalemated;
+        result.checkStateDeferred = checkStateDeferred;
+        System.arraycopy(attackMaps, 0, result.attackMaps, 0, attackMaps.length);
+        result.attackMapsValid = attackMapsValid;
+
+        result.initialPosition = takeSnapshot();
+        result.initialPositionHash = positionHash;
+
+        return result;
+    }
+
+    // неизменяемая копия текущей позиции, которую можно передавать в другие потоки
+    public Position getPosition() {
+        return new Position(bitboards.clone(), moveOrder, castling, enPassantSquare, halfmoveQnt, moveNumber);
+    }
+
+    // то же, что loadFromFEN, но без разбора FEN: позиция переносится из битбордов
+    public void loadPosition(Position position) {
+        PositionSnapshot snapshot = position.toSnapshot();
+
+        beginUpdate();
+        try {
+            restoreSnapshot(snapshot);
+        } finally {
+            endUpdate();
+        }
+
+        lastMoveVariants = null;
+        lastMoveIndex = -1;
+        initialPositionFEN = null;
+        initialPosition = snapshot;
+        initialPositionHash = positionHash;
+    }
+
+    PositionSnapshot takeSnapshot() {
+        return new PositionSnapshot(bitboards, castling, enPassantSquare, moveOrder, halfmoveQnt, moveNumber);
+    }
+
+    // восстановление позиции из снимка, сохраненного в ходе (по rollback(), rollup(), gotoMove()), без разбора FEN.
+    // Меняются только отличающиеся поля: фигуры, стоящие там же, где в снимке, остаются на месте,
+    // снятые фигуры попадают в пул и из него же берутся недостающие, так что новые объекты почти не создаются
+    void restoreSnapshot(PositionSnapshot snapshot) {
+        ensurePieces();
+        beginUpdate();
+        try {
+            setEnPassantIndex(-1);  // ключ взятия на проходе в хеше зависит от пешек - снимаем его до их перестановки
+
+            for (long pieces = bitboards[Bitboards.ALL_PIECES]; pieces != 0; pieces &= pieces - 1) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                int x = Bitboards.squareX(square), y = Bitboards.squareY(square);
+
+                if (squares[x][y].getID() != snapshot.getPieceId(square)) {
+                    poolPiece(squares[x][y]);
+                    setPieceAt(x, y, null);
+                }
+            }
+
+            for (int quarter = 0; quarter < 4; quarter++) {
+                for (long squares = snapshot.getSquares(quarter); squares != 0; ) {
+                    int nibble = Long.numberOfTrailingZeros(squares) >>> 2;
+                    int square = quarter * 16 + nibble;
+                    int id = (int) ((squares >>> (nibble * 4)) & 0xF) - 1;
+                    int x = Bitboards.squareX(square), y = Bitboards.squareY(square);
+
+                    if (this.squares[x][y] == null) {
+                        obtainPiece(KINDS[id % 6], COLORS[id / 6], x, y);
+                    }
+                    squares &= ~(0xFL << (nibble * 4));
+                }
+            }
+
+            setMoveOrder(snapshot.getMoveOrder());
+            setCastling(snapshot.getCastling());
+            setEnPassantIndex(snapshot.getEnPassantSquare());
+            halfmoveQnt = snapshot.getHalfmoveQnt();
+            moveNumber = snapshot.getMoveNumber();
+
+            if (moveMode == TRUSTED) {
+                deferCheckState();
+            } else {
+                checkForCheckCheckmateStalemate();
+            }
+        } finally {
+            endUpdate(false);
+        }
+    }
+
+    // ставит на поле (x, y) фигуру вида kind цвета color. Фигура берется из пула снятых с доски, новая создается только если пул пуст
+    Piece obtainPiece(Kind kind, Color color, int x, int y) {
+        int id = Bitboards.pieceIndex(kind, color);
+
+        if (piecePoolCount[id] == 0) {
+            return Piece.createPiece(this, kind, color, x, y);
+        }
+
+        Piece piece = piecePool[id][--piecePoolCount[id]];
+
+        piecePool[id][piecePoolCount[id]] = null;
+        piece.reset();
+        setPieceAt(x, y, piece);
+
+        return piece;
+    }
+
+    // создает объекты фигур по битбордам для доски, полученной через copy(). Фигуры берутся из пула
+    private void ensurePieces() {
+        if (piecesPending) {
+            long hash = positionHash;
+            int validAttackMaps = attackMapsValid;
+
+            piecesPending = false;
+            for (int id = 0; id < 12; id++) {
+                for (long pieces = bitboards[id]; pieces != 0; pieces &= pieces - 1) {
+                    int square = Long.numberOfTrailingZeros(pieces);
+
+                    obtainPiece(KINDS[id % 6], COLORS[id / 6], Bitboards.squareX(square), Bitboards.squareY(square));
+                }
+            }
+
+            // битборды уже содержали эти фигуры, а setPieceAt еще раз учел их в хеше и сбросил карты атак
+            positionHash = hash;
+            attackMapsValid = validAttackMaps;
+        }
+    }
+
+    // кладет снятую с доски фигуру в пул. Сама фигура с доски не убирается
+    private void poolPiece(Piece piece) {
+        int id = piece.getID();
+
+        if (piecePoolCount[id] < PIECE_POOL_SIZE) {
+            piecePool[id][piecePoolCount[id]++] = piece;
+        }
+    }
+
+    // очищаем доску от фигур
+    private void clearPosition() {
+        piecesPending = false;
+        for (int x = 0; x < 8; x++)
+            for (int y = 0; y < 8; y++)
+                if (squares[x][y] != null) {
+                    poolPiece(squares[x][y]);
+                    squares[x][y] = null;
+                }
+        Arrays.fill(bitboards, 0);
+        attackMapsValid = 0;
+        legalityColor = null;
+        castling = 0;
+        enPassantSquare = -1;
+        enPassantKey = 0;
+        positionHash = moveOrder == BLACK ? Zobrist.BLACK_TO_MOVE : 0;
+
+        currentPlayerChecked = false;
+        currentPlayerMated = false;
+        currentPlayerStalemated = false;
+    }
+
+    private void lineFromFEN(int line, String position) {
+        int x = 0;
+
+        for(int charIndex = 0; charIndex < position.length(); charIndex++) {
+            char c = position.charAt(charIndex);
+
+            if (x > 7) {
+                throw new ErrorIllegalFEN(String.format("Line too long (%d)", line));
+            }
+
+            if (Character.isDigit(c)) {
+                int empty = Character.getNumericValue(c);
+
+                x += empty;
+                if (x > 8 || (x == 8 && charIndex >= position.length() && position.charAt(charIndex + 1) != '0')) {
+                    throw new ErrorIllegalFEN(String.format("Line too long (%d)", line));
+                }
+            }
+            else {
+                switch(c) {
+                    case 'P':
+                        obtainPiece(PAWN, WHITE, x, line);
+                        break;
+                    case 'R':
+                        obtainPiece(Kind.ROOK, WHITE, x, line);
+                        break;
+                    case 'N':
+                        obtainPiece(Kind.KNIGHT, WHITE, x, line);
+                        break;
+                    case 'B':
+                        obtainPiece(Kind.BISHOP, WHITE, x, line);
+                        break;
+                    case 'K':
+                        obtainPiece(Kind.KING, WHITE, x, line);
+                        break;
+                    case 'Q':
+                        obtainPiece(Kind.QUEEN, WHITE, x, line);
+                        break;
+                    case 'p':
+                        obtainPiece(PAWN, BLACK, x, line);
+                        break;
+                    case 'r':
+                        obtainPiece(Kind.ROOK, BLACK, x, line);
+                        break;
+                    case 'n':
+                        obtainPiece(Kind.KNIGHT, BLACK, x, line);
+                        break;
+                    case 'b':
+                        obtainPiece(Kind.BISHOP, BLACK, x, line);
+                        break;
+                    case 'k':
+                        obtainPiece(Kind.KING, BLACK, x, line);
+                        break;
+                    case 'q':
+                        obtainPiece(Kind.QUEEN, BLACK, x, line);
+                        break;
+                    default:
+                        throw new ErrorIllegalFEN(String.format("Unknown piece letter (%c)", c));
+                }
+                x++;
+            }
+        }
+
+        if (x < 8) {
+            throw new ErrorIllegalFEN(String.format("Line too short (%d)", line));
+        }
+    }
+
+    private boolean castlingPossible(Color color, Castling side) {
+        boolean result = false;
+        Piece pKing = null, pRook = null;
+
+        ensurePieces();
+        // Проверим, что король стоит на своем месте
+        switch (color) {
+            case WHITE:
+                pKing = squares[4][0]; // getPiece(getPointFromSquareName("e1"));
+                switch (side) {
+                    case KING:
+                        pRook = squares[7][0]; //getPiece(getPointFromSquareName("h1"));
+                        break;
+                    case QUEEN:
+                        pRook = squares[0][0]; // getPiece(getPointFromSquareName("a1"));
+                        break;
+                }
+                break;
+            case BLACK:
+                pKing = squares[4][7]; // getPiece(getPointFromSquareName("e8"));
+                switch (side) {
+                    case KING:
+                        pRook = squares[7][7]; // getPiece(getPointFromSquareName("h8"));
+                        break;
+                    case QUEEN:
+                        pRook = squares[0][7]; // getPiece(getPointFromSquareName("a8"));
+                        break;
+                }
+                break;
+        }
+
+        if (// проверим, что король на своем месте
+            pKing != null && pKing.getKind() == Kind.KING && pKing.getColor() == color &&
+            // проверим, что соответствующая ладья на своем месте
+            pRook != null && pRook.getKind() == Kind.ROOK && pRook.getColor() == color) {
+
+            result = true;
+        }
+
+        return result;
+    }
+
+    public void setupStartingPosition() {
+        loadFromFEN(STARTING_POSITION_FEN);
+    }
+
+    public void loadFromFEN(String FEN) {
+        loadFromFEN(FEN, false);
+
+        lastMoveVariants = null;
+        lastMoveIndex = -1;
+        initialPositionFEN = FEN;
+        initialPosition = null;
+        initialPositionHash = positionHash;
+    }
+
+    // загрузка позиции из FEN.
+    // Параметр restoring - признак загрузки начальной исследуемой позиции непосредственно из FEN (restoring = false)
+    // или восстановления сохраненной позиции после одного из ходов (по rollback(), rollup(), gotoMove()) (restoring = true)
+    private void loadFromFEN(String FEN, boolean restoring) {
+        int line = 0, charIndex = 0;
+
+        FEN = FEN.trim();
+
+        beginUpdate();
+        try {
+            clearPosition();
+
+            // строки доски
+            while (line < 8) {
+                int n = -1;
+
+                if (line == 7) {
+                    n = FEN.indexOf(' ', charIndex);
+                    if (n == -1) {
+                        throw new ErrorIllegalFEN("No active color part is represented");
+                    }
+                } else {
+                    n = FEN.indexOf('/', charIndex);
+                    if (n == -1) {
+                        throw new ErrorIllegalFEN(String.format("Too few lines (%d)", line + 1));
+                    }
+                }
+                lineFromFEN(7 - line, FEN.substring(charIndex, n));
+
+                charIndex = n + 1;
+                line++;
+            }
+
+            // активная сторона
+            if (FEN.length() > charIndex  && FEN.charAt(charIndex - 1) == ' ') {
+                char c = FEN.charAt(charIndex++);
+                switch (c) {
+                    case 'w':
+                        setMoveOrder(WHITE);
+                        break;
+                    case 'b':
+                        setMoveOrder(BLACK);
+                        break;
+                    default:
+                        throw new ErrorIllegalFEN(String.format("Unknown active color letter (%c)", c));
+                }
+
+                charIndex++;
+            } else {
+                throw new ErrorIllegalFEN("No active color part is represented");
+            }
+
+            // возможность рокировки
+            if (FEN.length() > charIndex && FEN.charAt(charIndex - 1) == ' ') {
+                char c = FEN.charAt(charIndex++);
+
+                if (c != '-') {
+                    do {
+                        switch (c) {
+                            case 'K':
+                                if (isCastlingPossible(WHITE, Castling.KING)) {
+                                    throw new ErrorIllegalFEN("Double white king-side castling is represented");
+                                } else {
+                                    // в FEN указана возможность рокировки белых в короткую сторону
+                                    // проверим, находятся ли фигуры в соответствующих положениях
+                                    if (castlingPossible(WHITE, Castling.KING)) {
+                                        setCastlingPossible(WHITE, Castling.KING, true);
+                                    }
+                                }
+                                break;
+                            case 'Q':
+                                if (isCastlingPossible(WHITE, Castling.QUEEN)) {
+                                    throw new ErrorIllegalFEN("Double white queen-side castling is represented");
+                                } else {
+                                    // в FEN указана возможность рокировки белых в длинную сторону
+                                    // проверим, находятся ли фигуры в соответствующих положениях
+                                    if (castlingPossible(WHITE, Castling.QUEEN)) {
+                                        setCastlingPossible(WHITE, Castling.QUEEN, true);
+                                    }
+                                }
+                                break;
+                            case 'k':
+                                if (isCastlingPossible(BLACK, Castling.KING)) {
+                                    throw new ErrorIllegalFEN("Double black king-side castling is represented");
+                                } else {
+                                    // в FEN указана возможность рокировки черных в короткую сторону
+                                    // проверим, находятся ли фигуры в соответствующих положениях
+                                    if (castlingPossible(BLACK, Castling.KING)) {
+                                        setCastlingPossible(BLACK, Castling.KING, true);
+                                    }
+                                }
+                                break;
+                            case 'q':
+                                if (isCastlingPossible(BLACK, Castling.QUEEN)) {
+                                    throw new ErrorIllegalFEN("Double black queen-side castling is represented");
+                                } else {
+                                    // в FEN указана возможность рокировки черных в длинную сторону
+                                    // проверим, находятся ли фигуры в соответствующих положениях
+                                    if (castlingPossible(BLACK, Castling.QUEEN)) {
+                                        setCastlingPossible(BLACK, Castling.QUEEN, true);
+                                    }
+                                }
+                                break;
+                            default:
+                                throw new ErrorIllegalFEN(String.format("Unknown castling letter (%c)", c));
+                        }
+
+                        if (FEN.length() > charIndex) {
+                            c = FEN.charAt(charIndex++);
+                        } else {
+                            throw new ErrorIllegalFEN("No en passant part is represented");
+                        }
+
+                    } while (c != ' ');
+                }
+                else {
+                    charIndex++;
+                }
+            } else {
+                throw new ErrorIllegalFEN("No castling availability part is represented");
+            }
+
+            // взятие на проходе
+            if (FEN.length() > charIndex && FEN.charAt(charIndex - 1) == ' ') {
+                if (FEN.charAt(charIndex) != '-') {
+                        setEnPassantSquare(getPointFromSquareName(FEN.substring(charIndex, charIndex + 2)));
+                        charIndex += 3;
+                }
+                else {
+                    setEnPassantSquare(null);
+                    charIndex += 2;
+                }
+            }
+            else {
+                throw new ErrorIllegalFEN("No en passant part is represented");
+            }
+
+            // количество незначащих полуходов
+            if (FEN.length() > charIndex && FEN.charAt(charIndex - 1) == ' ') {
+                int n = FEN.indexOf(' ', charIndex);
+                if (n == -1) {
+                    throw new ErrorIllegalFEN("No move number part is represented");
+                }
+
+                halfmoveQnt = Integer.valueOf(FEN.substring(charIndex, n));
+                charIndex = n + 1;
+            }
+            else {
+                throw new ErrorIllegalFEN("No halfmove clock part is represented");
+            }
+
+            // номер хода
+            if (FEN.length() > charIndex&& FEN.charAt(charIndex - 1) == ' ') {
+
+                moveNumber = Integer.valueOf(FEN.substring(charIndex, FEN.length()));
+            }
+            else {
+                throw new ErrorIllegalFEN("No move number part is represented");
+            }
+
+            checkForCheckCheckmateStalemate();
+        } finally {
+            endUpdate(!restoring);
+        }
+    }
+
+    private void doOnBoardChange() {
+        if (updateCount == 0) {
+            for (int i = 0; i < mOnMoveListeners.size(); i++) {
+                mOnMoveListeners.get(i).onBoardChange();
+            }
+        }
+    }
+
+    private boolean doOnMove(Move move) {
+        boolean result = true;
+
+        if (updateCount == 0) {
+            for (int i = 0; i < mOnMoveListeners.size(); i++) {
+                result &= mOnMoveListeners.get(i).onMove(move);
+            }
+        }
+
+        return result;
+    }
+
+    private void doOnRollback(Move move) {
+        if (updateCount == 0) {
+            for (int i = 0; i < mOnMoveListeners.size(); i++) {
+                mOnMoveListeners.get(i).onRollback(move);
+            }
+        }
+    }
+
+    private void doOnRollup(Move move) {
+        if (updateCount == 0) {
+            for (int i = 0; i < mOnMoveListeners.size(); i++) {
+                mOnMoveListeners.get(i).onRollup(move);
+            }
+        }
+    }
+
+    private void doOnGoto(Move move) {
+        for (int i = 0; i < mOnMoveListeners.size(); i++) {
+            mOnMoveListeners.get(i).onGoto(move);
+        }
+    }
+
+    public Point getEnPassantSquare() {
+        return enPassantSquare < 0 ? null : new Point(Bitboards.squareX(enPassantSquare), Bitboards.squareY(enPassantSquare));
+    }
+
+    public void setEnPassantSquare(Point p) {setEnPassantIndex(p == null ? -1 : Bitboards.square(p.x, p.y));}
+
+    int getEnPassantIndex() {return enPassantSquare;}
+
+    void setEnPassantIndex(int square) {
+        positionHash ^= enPassantKey;
+        enPassantSquare = square;
+        enPassantKey = 0;
+
+        if (square >= 0) {
+            // поле учитываем в хеше только если есть пешка, которая может взять на проходе, иначе позиция ничем не отличается
+            // от такой же позиции без поля взятия на проходе
+            Color color = Bitboards.squareY(square) == 2 ? WHITE : BLACK;  // цвет пешки, прошедшей через поле
+
+            if ((Bitboards.pawnAttacksFrom(square, color) & bitboards[Bitboards.pieceIndex(PAWN, color.opposite())]) != 0) {
+                enPassantKey = Zobrist.enPassant(square);
+            }
+        }
+        positionHash ^= enPassantKey;
+    }
+
+    private void clearPiecesToMove() {
+        for (int i = 0; i < piecesToMove.size(); i++) {
+            piecesToMove.get(i).clearAvailableMoves();
+        }
+
+        piecesToMove.clear();
+        piecesToMoveValid = false;
+    }
+
+    private void ensurePiecesToMove() {
+        ensureCheckState();
+        if (!piecesToMoveValid) {
+            generateAvailableMoves(moveOrder);
+        }
+    }
+
+    public int findMoveVariant(Kind kind, Color color,Point from, Point to, ChessBoard.PromoteTo promotePawnTo) {
+        int result = -1;
+        Move lastMove = getLastMove();
+
+        if (lastMove != null) {
+            result = lastMove.findVariant(kind, color, from, to, promotePawnTo);
+        }
+
+        return result;
+    }
+
+    // признаки шаха, мата и пата и список фигур, которыми можно сходить, будут вычислены при первом обращении к ним
+    private void deferCheckState() {
+        clearPiecesToMove();
+        currentPlayerChecked = false;
+        currentPlayerMated = false;
+        currentPlayerStalemated = false;
+        checkStateDeferred = true;
+    }
+
+    private void ensureCheckState() {
+        if (checkStateDeferred) {
+            checkForCheckCheckmateStalemate();
+        }
+    }
+
+    public boolean isCurrentPlayerChecked() {
+        ensureCheckState();
+        return currentPlayerChecked;
+    }
+
+    public boolean isCurrentPlayerCheckmated() {
+        ensureCheckState();
+        return currentPlayerMated;
+    }
+
+    public boolean isCurrentPlayerStalemated() {
+        ensureCheckState();
+        return currentPlayerStalemated;
+    }
+
+    // занятые поля (для проверки атак фигур по таблицам Bitboards)
+    long getOccupied() {
+        return bitboards[Bitboards.ALL_PIECES];
+    }
+
+    long getSanAmbiguity() {
+        return sanAmbiguity;
+    }
+
+    // буфер для построения нотации ходов, чтобы не создавать StringBuilder на каждый ход
+    StringBuilder getNotationBuilder() {
+        notationBuilder.setLength(0);
+        return notationBuilder;
+    }
+
+    public void setMoveList(MoveList moves) {
+        if (game.getMoves() != moves) {
+            game.setMoves(moves);
+            lastMoveVariants = null;
+            lastMoveIndex = -1;
+
+            doOnBoardChange();
+        }
+    }
+
+
+    public void setGame(Game game) {
+        if (game != this.game) {
+            this.game = game;
+
+            if (game == null) {
+                game.clearMoves();
+                setupStartingPosition();
+            }
+            else {
+                loadFromFEN(game.getStartPosition());
+            }
+        }
+    }
+
+    // id-ы ходов в новой ветке не должны совпадать с существующими
+    public void addLineToLastMove(Move newLine) {
+        int newLineMinId = min(newLine.getMoveId(), newLine.getVariants().minId());
+        int curMaxId = getFirstMoveVariants().maxId();
+
+        if (newLineMinId <= curMaxId) {
+            int difference = curMaxId - newLineMinId + 1;
+            newLine.shiftMoveId(difference);
+            newLine.getVariants().shiftIds(difference);
+        }
+
+        getLastMove().getVariants().addLine(newLine);
+        game.onLineAdded(newLine);
+    }
+
+    public void doAfterMove(Move move) {
+        if (updateCount == 0) {
+            for (int i = 0; i < mOnMoveListeners.size(); i++) {
+                mOnMoveListeners.get(i).afterMove(move);
+            }
+        }
+    }
+
+    // передаем ход противнику
+    private boolean passMoveToOpponent(boolean forceNewVariant) {
+        boolean result = true;
+
+        lastMove.saveMoveNotation(this);
+        if (logMoves && moveMode != TRUSTED) {
+            // лог ходов для отчета о падении. При импорте PGN ходы не логгируем
+            logMove(lastMove);
+        }
+        transformation = ' ';
+        setMoveOrder(moveOrder.opposite());
+        halfmoveQnt++; // счетчик незначащих полуходов
+
+        if (moveMode == FULL) {
+            checkForCheckCheckmateStalemate();
+            if (!currentPlayerMated) {
+                lastMove.setGameDrawn(isInsufficientMaterial());
+                lastMove.setDrawClaimable(isDrawClaimable());
+            }
+            lastMove.saveMoveState(this);
+        }
+        else if (moveMode == TRUSTED) {
+            deferCheckState();
+            // если окажется, что это мат, Move сбросит признаки
+            lastMove.setGameDrawn(isInsufficientMaterial());
+            lastMove.setDrawClaimable(isDrawClaimable());
+            lastMove.saveMoveState(this);
+        }
+
+        if (lastMoveVariants == null) {
+            if (game.getMoves() != null) {
+                lastMoveVariants = game.getMoves();
+            }
+            else {
+                lastMoveVariants = new MoveList();
+                game.setMoves(lastMoveVariants);
+            }
+        }
+        else {
+            lastMoveVariants = lastMoveVariants.get(lastMoveIndex).getVariants();
+        }
+
+        lastMoveIndex = -1;
+        if (lastMoveVariants.size() > 0) {
+            // Проверим, что ранее в этой ветке не было уже такого хода. Если был, то не будем добавлять еще раз
+            Move prevMove = lastMoveVariants.get(0).getPrevMove();
+
+            if (prevMove != null) {
+                // prevMove == null => только что сделан первый ход
+                lastMoveIndex = prevMove.findVariant(lastMove.getPiece1Kind(), moveOrder.opposite(), lastMove.getPiece1From(), lastMove.getPiece1To(), lastMove.getPromotePawnTo());
+            }
+        }
+
+        // Если только что был сделан первый ход или не было такого варианта - добавим
+        if (lastMoveIndex == -1 || forceNewVariant) {
+
+            if (forceNewVariant) {
+                lastMoveIndex = lastMoveVariants.size();
+                lastMoveVariants.add(lastMove);
+                game.onLineAdded(lastMove);
+            }
+            else {
+                int moveIndex = lastMoveVariants.locateMove(lastMove);
+
+                if (moveIndex == -1) {
+                    lastMoveVariants.add(0, lastMove);
+                    game.onLineAdded(lastMove);
+                }
+                else {
+                    // переместим вариант в начало
+                    lastMoveVariants.add(0, lastMoveVariants.remove(moveIndex));
+                }
+                lastMoveIndex = 0;
+            }
+        }
+
+        if (moveMode == SIMPLE) {
+            if (moveOrder == WHITE) {
+                moveNumber++;
+            }
+        }
+        else {
+            if (doOnMove(lastMove)) {
+                if (moveOrder == WHITE) {
+                    moveNumber++;
+                }
+
+                doAfterMove(lastMove);
+                doOnBoardChange();
+            } else {
+                result = false;
+
+                beginUpdate();
+                try {
+                    rollback();
+                } finally {
+                    endUpdate(false);
+                }
+                removeMove(lastMove);
+            }
+        }
+
+        return result;
+    }
+
+    // ничью по правилу 50 ходов или троекратному повторению позиции игрок может потребовать, но партия на этом не заканчивается.
+    // Вызывается после хода, когда ход уже передан противнику, но еще не добавлен в дерево ходов
+    private boolean isDrawClaimable() {
+        return halfmoveQnt >= FIFTY_MOVES || isThreefoldRepetition();
+    }
+
+    // ничья, не требующая заявления игрока: ни у одной из сторон не хватает фигур, чтобы поставить мат. Только короли,
+    // король и легкая фигура против короля или только слоны, стоящие на полях одного цвета
+    private boolean isInsufficientMaterial() {
+        long minor = 0, bishops = 0;
+
+        for (Color color : COLORS) {
+            if ((bitboards[Bitboards.pieceIndex(PAWN, color)] | bitboards[Bitboards.pieceIndex(Kind.ROOK, color)] |
+                    bitboards[Bitboards.pieceIndex(Kind.QUEEN, color)]) != 0) {
+                return false;
+            }
+            bishops |= bitboards[Bitboards.pieceIndex(Kind.BISHOP, color)];
+            minor |= bitboards[Bitboards.pieceIndex(Kind.KNIGHT, color)];
+        }
+        minor |= bishops;
+
+        return Long.bitCount(minor) <= 1 ||
+                (minor == bishops && ((bishops & Bitboards.DARK_SQUARES) == 0 || (bishops & ~Bitboards.DARK_SQUARES) == 0));
+    }
+
+    // текущая позиция встречалась в этой линии партии еще хотя бы два раза. Позиции сравниваются по хешу, сохраненному в ходах.
+    // Просматриваются только последние halfmoveQnt полуходов: до взятия или хода пешкой позиция не могла быть такой же
+    private boolean isThreefoldRepetition() {
+        int repetitions = 1;
+        Move move = getLastMove();  // ход, после которого сложилась позиция на полуход раньше текущей
+
+        for (int plies = 1; plies <= halfmoveQnt; plies++) {
+            long hash = move == null ? initialPositionHash : move.getPositionHash();
+
+            // сравниваем только позиции с той же очередью хода
+            if ((plies & 1) == 0 && hash == positionHash && ++repetitions >= 3) {
+                return true;
+            }
+            if (move == null) {
+                break;
+            }
+            move = move.getPrevMove();
+        }
+
+        return false;
+    }
+
+    public Move findMove(int id) {
+        return game.findMove(id);
+    }
+
+    // поля, с которых фигура вида kind цвета color может пойти на поле to (без проверки шаха своему королю)
+    private long sanCandidates(Kind kind, Color color, int to, boolean capture) {
+        long occupied = bitboards[Bitboards.ALL_PIECES];
+
+        switch (kind) {
+            case KING:
+                return Bitboards.kingAttacksFrom(to);
+            case QUEEN:
+                return Bitboards.rookAttacks(to, occupied) | Bitboards.bishopAttacks(to, occupied);
+            case ROOK:
+                return Bitboards.rookAttacks(to, occupied);
+            case BISHOP:
+                return Bitboards.bishopAttacks(to, occupied);
+            case KNIGHT:
+                return Bitboards.knightAttacksFrom(to);
+            default:
+                if (capture) {
+                    return Bitboards.pawnAttacksFrom(to, color.opposite());
+                } else {
+                    int back = color == WHITE ? -8 : 8;
+                    int from = to + back;
+
+                    if (from < 0 || from > 63) {
+                        return 0;
+                    }
+                    if ((occupied & Bitboards.bit(from)) == 0 && Bitboards.squareY(to) == (color == WHITE ? 3 : 4)) {
+                        // ход пешкой через поле
+                        from += back;
+                    }
+                    return Bitboards.bit(from);
+                }
+        }
+    }
+
+    // оставляет в candidates только фигуры, которые могут пойти на поле to, не оставив своего короля под шахом
+    private long legalCandidates(long candidates, int to) {
+        int count = generateMoves(moveBuffer);
+        long result = 0;
+
+        for (int i = 0; i < count; i++) {
+            int move = moveBuffer[i];
+            long from = Bitboards.bit(PackedMove.getFrom(move));
+
+            if (PackedMove.getTo(move) == to && (candidates & from) != 0 && (result & from) == 0 &&
+                    MoveGenerator.isLegal(bitboards, moveOrder, move, scratchBitboards)) {
+                result |= from;
+            }
+        }
+
+        return result;
+    }
+
+    // другие фигуры того же вида, которые тоже могут пойти на поле to. Для пешек неоднозначности не бывает (вертикаль пишется всегда)
+    private long getSanAmbiguity(Piece piece, int to) {
+        if (piece.getKind() == PAWN) {
+            return 0;
+        }
+
+        long from = Bitboards.bit(Bitboards.square(piece.getX(), piece.getY()));
+        long others = bitboards[Bitboards.pieceIndex(piece.getKind(), piece.getColor())] &
+                sanCandidates(piece.getKind(), piece.getColor(), to, false) & ~from;
+
+        if (others != 0) {
+            others = legalCandidates(others, to);
+        }
+
+        return others;
+    }
+
+    // ход в краткой нотации в режиме TRUSTED: ход считается правильным, фигура выбирается по битбордам
+    // и только при нескольких подходящих фигурах проверяется, какие из них связаны
+    private boolean trustedShortMove(Color player, String move, boolean forceNewVariant) {
+        ensurePieces();
+        if (!sanParser.parse(move)) {
+            return false;
+        }
+
+        if (sanParser.castling != SanParser.NO_CASTLING) {
+            int y = player == WHITE ? 0 : 7;
+            Piece king = squares[4][y];
+
+            return king != null && king.getKind() == Kind.KING && king.getColor() == player &&
+                    movePieceTo(king, sanParser.castling == SanParser.LONG_CASTLING ? 2 : 6, y, forceNewVariant);
+        }
+
+        Kind kind = sanParser.kind;
+        int fromX = sanParser.fromX, fromY = sanParser.fromY, toX = sanParser.toX, toY = sanParser.toY;
+        int to = Bitboards.square(toX, toY);
+        long candidates = bitboards[Bitboards.pieceIndex(kind, player)] &
+                sanCandidates(kind, player, to, kind == PAWN && fromX >= 0 && fromX != toX);
+
+        if (fromX >= 0) {
+            candidates &= Bitboards.FILE_A << fromX;
+        }
+        if (fromY >= 0) {
+            candidates &= Bitboards.RANK_1 << (fromY * 8);
+        }
+
+        if (Long.bitCount(candidates) > 1) {
+            // есть несколько фигур, которые могут пойти на это поле - отбросим связанные
+            candidates = legalCandidates(candidates, to);
+        }
+
+        if (Long.bitCount(candidates) != 1) {
+            return false;
+        }
+
+        int from = Long.numberOfTrailingZeros(candidates);
+        transformation = sanParser.promotion;
+
+        return movePieceTo(squares[Bitboards.squareX(from)][Bitboards.squareY(from)], toX, toY, forceNewVariant);
+    }
+
+    // ищет ход в краткой нотации (e4, Nbd7, exd6 e.p., e8=Q, O-O, 0-0-0 ...) среди легальных ходов стороны, чья очередь хода.
+    // Ходы генерируются один раз, легальность проверяется только у ходов, подходящих под запись.
+    // Возвращает ход (см. PackedMove) или PackedMove.NO_MOVE, если ход невозможен или запись неоднозначна.
+    // Если фигура превращения не указана, возвращается превращение в ферзя
+    public int resolveShortMove(CharSequence move) {
+        int result = PackedMove.NO_MOVE;
+
+        if (sanParser.parse(move)) {
+            int count = generateMoves(moveBuffer);
+
+            for (int i = 0; i < count; i++) {
+                if (sanParser.matches(moveBuffer[i]) && MoveGenerator.isLegal(bitboards, moveOrder, moveBuffer[i], scratchBitboards)) {
+                    if (result != PackedMove.NO_MOVE) {
+                        return PackedMove.NO_MOVE;  // под запись подходят несколько ходов
+                    }
+                    result = moveBuffer[i];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public boolean shortMove(Color player, String move) {
+        return shortMove(player, move, false);
+    }
+
+    // make move by short notation (like e4, d1Q, Rae2, ...)
+    public boolean shortMove(Color player, String move, boolean forceNewVariant) {
+        boolean result = false;
+
+        ensurePieces();
+
+        if (move != null && !move.isEmpty()) {
+            if (move.equals("--") || move.equals("<>")) {
+                // null-move
+                lastMove = new Move(null);
+                passMoveToOpponent(false);
+                result = true;
+            }
+            else if (moveMode == TRUSTED) {
+                result = trustedShortMove(player, move, forceNewVariant);
+            }
+            else if (player == moveOrder) {
+                int packedMove = resolveShortMove(move);
+
+                if (packedMove != PackedMove.NO_MOVE) {
+                    int from = PackedMove.getFrom(packedMove), to = PackedMove.getTo(packedMove);
+
+                    // если фигура превращения не указана, то ее выбор остается за movePieceTo, как и раньше
+                    transformation = sanParser.promotion;
+                    result = movePieceTo(squares[Bitboards.squareX(from)][Bitboards.squareY(from)],
+                            Bitboards.squareX(to), Bitboards.squareY(to), forceNewVariant);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public boolean rollbackEnabled() {
+        return getLastMove() != null;
+    }
+
+    public boolean rollupEnabled() {
+        return (getLastMove() != null && getLastMove().getVariantCount() > 0) ||
+                (getLastMove() == null && getFirstMoveVariants() != null && getFirstMoveVariants().size() > 0);
+    }
+}
@@ -0,0 +1,47 @@
+package dmlam.ru.chessboard;
+
+// реализация IDiagnostics, которой пользуются классы движка.
+// По умолчанию ошибки печатаются в System.err, а данные для отчета о падении не сохраняются
+public final class Diagnostics {
+    private static volatile IDiagnostics diagnostics = new IDiagnostics() {
+        @Override
+        public void logError(String tag, String message) {
+            System.err.println(tag + ": " + message);
+        }
+
+        @Override
+        public String getCustomData(String key) {
+            return null;
+        }
+
+        @Override
+        public void putCustomData(String key, String value) {
+        }
+
+        @Override
+        public void putLazyData(String key, Object value) {
+        }
+
+        @Override
+        public void flushLazyData() {
+        }
+    };
+
+    private Diagnostics() {
+    }
+
+    public static IDiagnostics get() {
+        return diagnostics;
+    }
+
+    public static void set(IDiagnostics diagnostics) {
+        if (diagnostics == null) {
+            throw new NullPointerException("diagnostics");
+        }
+        Diagnostics.diagnostics = diagnostics;
+    }
+
+    static void logError(String tag, String message) {
+        diagnostics.logError(tag, message);
+    }
+}
@@ -1,7 +1,5 @@
 package dmlam.ru.chessboard;
 
-import android.text.TextUtils;
-
 import java.util.ArrayList;
 
 import static dmlam.ru.chessboard.Piece.Color.BLACK;
@@ -34,6 +32,7 @@ public class Game {
     private ArrayList<Tag> tags = new ArrayList<>();
     private MoveList moves = new MoveList();  // variants of the first move
     private GameResult result = null;
+    private MoveIndex moveIndex = null;  // ходы всех вариантов по id. Строится при первом поиске хода
 
     public void addTag(String name, String value) {
         if (name == null) {
@@ -76,6 +75,7 @@ public class Game {
     public void New() {
         tags.clear();
         moves.clear();
+        moveIndex = null;
         result = GameResult.UNKNOWN;
         startPosition = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
     }
@@ -90,7 +90,10 @@ public class Game {
     }
 
     public void setMoves(MoveList moves) {
-        this.moves = moves;
+        if (this.moves != moves) {
+            this.moves = moves;
+            moveIndex = null;
+        }
     }
 
     public void setStartPosition(String startPosition) {
@@ -101,12 +104,41 @@ public class Game {
         if (moves != null) {
             moves.clear();
         }
+        moveIndex = null;
+    }
+
+    // ход с идентификатором id в любом из вариантов партии или null
+    public Move findMove(int id) {
+        if (moves == null) {
+            return null;
+        }
+        // индекс строится заново, только если его еще нет или у какого-то из ходов сдвинули id (MoveList.shiftIds)
+        if (moveIndex == null || !moveIndex.isValid()) {
+            moveIndex = new MoveIndex();
+            moveIndex.putAll(moves);
+        }
+
+        return moveIndex.get(id);
+    }
+
+    // вызывается при добавлении в дерево хода line (вместе с его вариантами)
+    void onLineAdded(Move line) {
+        if (moveIndex != null) {
+            moveIndex.putLine(line);
+        }
+    }
+
+    // вызывается при удалении из дерева хода line (вместе с его вариантами)
+    void onLineRemoved(Move line) {
+        if (moveIndex != null) {
+            moveIndex.removeLine(line);
+        }
     }
 
     private StringBuilder formatComment(String comment) {
         StringBuilder result = new StringBuilder();
 
-        if (!TextUtils.isEmpty(comment)) {
+        if (comment != null && !comment.isEmpty()) {
             result.append('{')
                 .append(comment)
                 .append("} ");
@@ -0,0 +1,11 @@
+package dmlam.ru.chessboard;
+
+// получает от движка сообщения об ошибках и данные для отчета о падении.
+// В Android-библиотеке они уходят в Log и ACRA, на обычной JVM - в System.err (см. Diagnostics)
+public interface IDiagnostics {
+    void logError(String tag, String message);
+    String getCustomData(String key);               // данные, прикладываемые к отчету о падении
+    void putCustomData(String key, String value);
+    void putLazyData(String key, Object value);     // value.toString() вызывается только при формировании отчета
+    void flushLazyData();                           // переносит данные putLazyData в отчет. Вызывать перед отправкой перехваченной ошибки
+}
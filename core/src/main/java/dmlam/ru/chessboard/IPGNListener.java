@@ -0,0 +1,15 @@
+package dmlam.ru.chessboard;
+
+// получает события, которые PGNReader выдает при разборе партии.
+// События идут в порядке файла, партия всегда заканчивается onGameEnd
+public interface IPGNListener {
+    void onTag(String name, String value);
+    void onMoveNumber(int moveNumber, Piece.Color moveOrder) throws PGNError;  // "12." - WHITE, "12..." - BLACK
+    void onMove(String move) throws PGNError;                                   // ход в краткой нотации, как записан в файле
+    void onNumericAnnotationGlyph(int glyph) throws PGNError;                   // $n
+    void onAnnotation(String annotation) throws PGNError;                       // !, ?, !? и т.п. после хода
+    void onComment(String comment) throws PGNError;                             // {...} или ; до конца строки
+    void onVariationStart() throws PGNError;
+    void onVariationEnd() throws PGNError;
+    void onGameEnd(Game.GameResult result) throws PGNError;                     // result == null, если результат в файле не указан
+}
@@ -1,7 +1,5 @@
 package dmlam.ru.chessboard;
 
-import android.graphics.Point;
-
 /**
  * Created by Lam on 13.06.2015.
  */
@@ -22,10 +20,7 @@ public class KingPiece extends Piece {
 
     @Override
     public boolean isSquareThreaten (int x, int y) {
-        int deltax = x - this.x, deltay = y - this.y;
-        boolean result = Math.abs(deltax) <= 1 && Math.abs(deltay) <= 1;
-
-        return result;
+        return isInAttacks(Bitboards.kingAttacksFrom(Bitboards.square(this.x, this.y)), x, y);
     }
 
     @Override
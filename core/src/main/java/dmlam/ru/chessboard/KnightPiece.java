@@ -1,7 +1,5 @@
 package dmlam.ru.chessboard;
 
-import android.graphics.Point;
-
 /**
  * Created by Lam on 13.06.2015.
  */
@@ -22,7 +20,7 @@ public class KnightPiece extends Piece {
 
     @Override
     public boolean isSquareThreaten (int x, int y) {
-        return ((Math.abs(this.x - x) == 1 && Math.abs(this.y - y) == 2) || Math.abs(this.x - x) == 2 && Math.abs(this.y - y) == 1);
+        return isInAttacks(Bitboards.knightAttacksFrom(Bitboards.square(this.x, this.y)), x, y);
     }
 
     @Override
@@ -1,8 +1,6 @@
 package dmlam.ru.chessboard;
 
-import android.graphics.Point;
-
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import dmlam.ru.chessboard.Game.GameResult;
 
@@ -15,7 +13,7 @@ import static dmlam.ru.chessboard.Game.GameResult.UNKNOWN;
 final public class Move {
     private final String NULL_MOVE_NOTATION = "--";
 
-    private static int moveIdGenerator = 0;
+    private static final AtomicInteger moveIdGenerator = new AtomicInteger();  // ходы создаются и на досках в других потоках (ChessBoard.copy(), индексация PGN)
 
     private int id = 0;  // id хода по которому его можно будет найти, например, при клике пользователя по записи партии
     private Piece piece = null; // сходившая фигура. Если null, то это null-ход
@@ -25,7 +23,8 @@ final public class Move {
 
     private Piece.Color moveOrder;              // кто сходил - белые или черные
     private int moveNumber = 1;
-    private String FEN = null;                  // запись позиции, сформировавшейся после хода
+    private PositionSnapshot snapshot = null;   // позиция, сформировавшаяся после хода
+    private long positionHash = 0;              // хеш позиции, сформировавшейся после хода (ChessBoard.getPositionHash())
     private String notation = null;             // записи хода в нотации SAN и простой
     private String comment = null;              // комментарий к ходу
     private String info = null;                 // дополнительная информация, не отображающаяся в нотации
@@ -37,16 +36,20 @@ final public class Move {
     private boolean opponentStalemated = false; // противник попал в патовую ситуацию после этого хода
     private boolean opponentResign = false;     // противник сдался
     private boolean gameDrawn = false;          // игра завершилась вничью
+    private boolean drawClaimable = false;      // после хода можно потребовать ничью (троекратное повторение, правило 50 ходов)
+    private boolean stateDeferred = false;      // три признака выше еще не вычислены (ход сделан в режиме ChessBoard.MoveMode.TRUSTED)
 
     private GameResult gameResult = UNKNOWN;
 
     protected MoveList prevVariants;
-    private MoveList variants = new MoveList();
+    Move prevMove = null;                       // ход, вариантом продолжения которого является этот ход (устанавливает MoveList)
+    MoveIndex index = null;                     // индекс ходов партии, в котором есть этот ход (устанавливает MoveIndex)
+    private MoveList variants = new MoveList(this);
 
     public Move(Piece piece) {
         this.piece = piece;
         this.moveNumber = piece.chessBoard.getMoveNumber(); //piece.chessBoard.getMoveOrder() == Piece.Color.WHITE ? piece.chessBoard.getMoveNumber() + 1 : piece.chessBoard.getMoveNumber();
-        id = ++moveIdGenerator;
+        id = moveIdGenerator.incrementAndGet();
     }
 
     public boolean isNullMove() {
@@ -67,14 +70,17 @@ final public class Move {
     }
 
     public boolean isOpponentChecked() {
+        resolveState();
         return opponentChecked;
     }
 
     public boolean isOpponentCheckmated() {
+        resolveState();
         return opponentCheckmated;
     }
 
     public boolean isOpponentStalemated() {
+        resolveState();
         return opponentStalemated;
     }
 
@@ -86,6 +92,14 @@ final public class Move {
         this.gameDrawn = gameDrawn;
     }
 
+    public boolean isDrawClaimable() {
+        return drawClaimable;
+    }
+
+    public void setDrawClaimable(boolean drawClaimable) {
+        this.drawClaimable = drawClaimable;
+    }
+
     public boolean isOpponentResign() {
         return opponentResign;
     }
@@ -132,6 +146,11 @@ final public class Move {
 
     public void shiftMoveId(int difference) {
         id += difference;
+
+        // ход лежит в индексе под старым id - индекс будет построен заново при следующем поиске
+        if (index != null) {
+            index.invalidate();
+        }
     }
 
     public int getMoveNumber() {
@@ -139,16 +158,7 @@ final public class Move {
     }
 
     public Move getPrevMove() {
-        if (prevVariants == null)
-            return null;
-        else {
-            for (int i = 0; i < prevVariants.size(); i++) {
-                if (prevVariants.get(i).getVariants().indexOf(this) >= 0)
-                    return prevVariants.get(i);
-            }
-
-            return null;
-        }
+        return prevMove;
     }
 
     public MoveList getPrevVariants () {
@@ -193,16 +203,43 @@ final public class Move {
 
     public void saveMoveState(ChessBoard board) {
         this.moveOrder = board.getMoveOrder();
-        this.opponentChecked = board.isCurrentPlayerChecked();
-        this.opponentCheckmated = board.isCurrentPlayerCheckmated();
-        this.opponentStalemated = board.isCurrentPlayerStalemated();
         this.prevVariants = board.getLastMoveVariants();
-        this.FEN = board.saveToFEN();
+        this.snapshot = board.takeSnapshot();
+        this.positionHash = board.getPositionHash();
 
-        if (numericAnnotationGlyph > 0) {
+        if (board.getMoveMode() == ChessBoard.MoveMode.TRUSTED) {
+            // шах, мат и пат будут вычислены по snapshot при первом обращении к ним
+            stateDeferred = true;
+        }
+        else {
+            this.opponentChecked = board.isCurrentPlayerChecked();
+            this.opponentCheckmated = board.isCurrentPlayerCheckmated();
+            this.opponentStalemated = board.isCurrentPlayerStalemated();
+            appendStateNotation();
+        }
+    }
 
+    private void resolveState() {
+        if (stateDeferred) {
+            long[] bitboards = snapshot.toBitboards();
+            Piece.Color opponent = snapshot.getMoveOrder();
+            long king = bitboards[Bitboards.pieceIndex(Piece.Kind.KING, opponent)];
+            boolean canMove = MoveGenerator.hasLegalMove(bitboards, opponent, snapshot.getCastling(), snapshot.getEnPassantSquare());
+
+            stateDeferred = false;
+            opponentChecked = king != 0 && Bitboards.isSquareAttacked(bitboards, Long.numberOfTrailingZeros(king), opponent.opposite());
+            opponentCheckmated = opponentChecked && !canMove;
+            opponentStalemated = !opponentChecked && !canMove;
+            if (opponentCheckmated) {
+                // мат последним ходом важнее ничьей по правилу 50 ходов
+                gameDrawn = false;
+                drawClaimable = false;
+            }
+            appendStateNotation();
         }
+    }
 
+    private void appendStateNotation() {
         if (opponentCheckmated || opponentResign) {
             notation += '#';
         }
@@ -352,23 +389,24 @@ final public class Move {
                     result = "0-0";
                 }
             } else {
-                StringBuilder sb = new StringBuilder();
+                StringBuilder sb = board.getNotationBuilder();
 
                 if (piece1Kind == Piece.Kind.PAWN) {
                     sb.append(ChessBoard.getLetter(piece1From.x));
 
                     if (piece2Kind != null && piece2To == null) {
                         // взятие фигуры или пешки
-                        sb.append("x").append(ChessBoard.squareName(piece1To));
+                        sb.append('x');
+                        appendSquare(sb, piece1To);
                         if (piece1To != null && piece1To.y != piece2From.y) {
                             sb.append(" e.p.");
                         }
                     } else {
                         if (piece1To != null) {
                             // не было превращения в фигуру
-                            sb.append(Integer.toString(piece1To.y + 1));
+                            sb.append((char) ('1' + piece1To.y));
                         } else {
-                            sb.append(Integer.toString(piece2To.y + 1));
+                            sb.append((char) ('1' + piece2To.y));
                         }
                     }
                     // если пешка превращается на последней для нее горизонтали - добавим в кого
@@ -379,42 +417,30 @@ final public class Move {
                     // все остальные фигуры (кроме пешки)
                     sb.append(piece1Kind.getNotationLetter());
 
-                    // Проверим, не существует ли неопределенности с фигурой, совершающей ход (т.е., две одинаковые фигуры, могущие сходить на одну клетку)
-                    ArrayList<Piece> ambiguity = new ArrayList<Piece>();
-
-                    for (int i = 0; i < board.getMoveablePiecesCount(); i++) {
-                        Piece piece = board.getMoveablePiece(i);
-                        if ((piece.getKind() == piece1Kind) && (piece != this.piece)) {
-
-                            for (int j = 0; j < piece.getAvailableMoveCount(); j++) {
-                                if (piece.getAvailableMove(j).equals(piece1To)) {
-                                    // есть неопределенность - добавим фигуру в список вносящих неопределенность
-                                    ambiguity.add(piece);
-                                }
-                            }
-                        }
-                    }
+                    // Проверим, не существует ли неопределенности с фигурой, совершающей ход (т.е., две одинаковые фигуры, могущие сходить на одну клетку).
+                    // ChessBoard находит такие фигуры по битбордам еще до хода
+                    long ambiguity = board.getSanAmbiguity();
 
-                    if (ambiguity.size() > 0) {
-                        if (ambiguity.size() == 1) {
+                    if (ambiguity != 0) {
+                        if (Long.bitCount(ambiguity) == 1) {
                             // только еще одна фигура может сходить на ту же клетку
-                            if (ambiguity.get(0).getX() == piece1From.x) {
+                            if (Bitboards.squareX(Long.numberOfTrailingZeros(ambiguity)) == piece1From.x) {
                                 // совпадают горизонтали фигур - добавляем в ход номер вертикали
-                                sb.append(piece1From.y + 1);
+                                sb.append((char) ('1' + piece1From.y));
                             } else {
                                 // совпадают вертикали - добавляем в ход наименование горизонтали
                                 sb.append(ChessBoard.getLetter(piece1From.x));
                             }
                         } else {
                             // еще две или более фигур могут сходить на ту же клетку, то обозначим фигуру, которая ходила полным названием клетки
-                            sb.append(ChessBoard.squareName(piece1From));
+                            appendSquare(sb, piece1From);
                         }
                     }
 
                     if (piece2Kind != null && piece2To == null) {
                         sb.append('x');
                     }
-                    sb.append(ChessBoard.squareName(piece1To));
+                    appendSquare(sb, piece1To);
                 }
 
                 result = sb.toString();
@@ -424,6 +450,10 @@ final public class Move {
         return result;
     }
 
+    private static void appendSquare(StringBuilder sb, Point square) {
+        sb.append(ChessBoard.getLetter(square.x)).append((char) ('1' + square.y));
+    }
+
     // Выдает нотацию хода в простом формате Rd2xd4 (фигура, откуда, куда)
     private String getFullNotation() {
         String result;
@@ -465,11 +495,20 @@ final public class Move {
 
     public String getNotation()
     {
+        resolveState();
         return notation;
     }
 
     public String getFEN() {
-        return FEN;
+        return snapshot == null ? null : snapshot.toFEN();
+    }
+
+    PositionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public long getPositionHash() {
+        return positionHash;
     }
 
     public int getNumericAnnotationGlyph() {
@@ -0,0 +1,232 @@
+package dmlam.ru.chessboard;
+
+import dmlam.ru.chessboard.Piece.Color;
+import dmlam.ru.chessboard.Piece.Kind;
+
+import static dmlam.ru.chessboard.Bitboards.ALL_PIECES;
+import static dmlam.ru.chessboard.Bitboards.bit;
+import static dmlam.ru.chessboard.Piece.Color.WHITE;
+
+// генератор псевдолегальных ходов прямо по битбордам.
+// Ходы (см. PackedMove) пишутся в переданный буфер, ничего не создается.
+// Легальность (не остался ли свой король под шахом) проверяет вызывающий, например через ChessBoard.makeMove/unmakeMove
+final class MoveGenerator {
+    // флаги возможности рокировок: бит с номером color.ordinal() * 2 + castling.ordinal()
+    static final int WHITE_QUEEN_CASTLING = 1;
+    static final int WHITE_KING_CASTLING = 2;
+    static final int BLACK_QUEEN_CASTLING = 4;
+    static final int BLACK_KING_CASTLING = 8;
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final int KING = Kind.KING.ordinal();
+    private static final int QUEEN = Kind.QUEEN.ordinal();
+    private static final int ROOK = Kind.ROOK.ordinal();
+    private static final int BISHOP = Kind.BISHOP.ordinal();
+    private static final int KNIGHT = Kind.KNIGHT.ordinal();
+    private static final int PAWN = Kind.PAWN.ordinal();
+
+    private MoveGenerator() {
+    }
+
+    static int castlingFlag(Color color, ChessBoard.Castling castling) {
+        return 1 << (color.ordinal() * 2 + castling.ordinal());
+    }
+
+    // вид фигуры цвета color, стоящей на поле square, или -1
+    static int kindAt(long[] bitboards, Color color, int square) {
+        int base = color.ordinal() * 6;
+        long b = bit(square);
+
+        for (int kind = 0; kind < 6; kind++) {
+            if ((bitboards[base + kind] & b) != 0) {
+                return kind;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int addMoves(long[] bitboards, Color enemy, Kind kind, int from, long targets, int[] moves, int count) {
+        long enemyPieces = bitboards[Bitboards.colorIndex(enemy)];
+
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+
+            if ((enemyPieces & bit(to)) != 0) {
+                moves[count++] = PackedMove.encodeCapture(from, to, kind, KINDS[kindAt(bitboards, enemy, to)]);
+            }
+            else {
+                moves[count++] = PackedMove.encode(from, to, kind);
+            }
+            targets &= targets - 1;
+        }
+
+        return count;
+    }
+
+    private static int addPawnMove(int move, boolean promotion, int[] moves, int count) {
+        if (promotion) {
+            moves[count++] = PackedMove.setPromotion(move, Kind.QUEEN);
+            moves[count++] = PackedMove.setPromotion(move, Kind.ROOK);
+            moves[count++] = PackedMove.setPromotion(move, Kind.BISHOP);
+            moves[count++] = PackedMove.setPromotion(move, Kind.KNIGHT);
+        }
+        else {
+            moves[count++] = move;
+        }
+
+        return count;
+    }
+
+    private static int generatePawnMoves(long[] bitboards, Color color, int enPassantSquare, int[] moves, int count) {
+        Color enemy = color.opposite();
+        long pawns = bitboards[color.ordinal() * 6 + PAWN];
+        long empty = ~bitboards[ALL_PIECES];
+        // короля взять нельзя
+        long enemyPieces = bitboards[Bitboards.colorIndex(enemy)] & ~bitboards[enemy.ordinal() * 6 + KING];
+        int forward = color == WHITE ? 8 : -8;
+        long lastRank = color == WHITE ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        long doubleMoveRank = color == WHITE ? 0xFF000000L : 0xFF00000000L;  // четвертая (пятая) горизонталь
+
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            int to = from + forward;
+            long target = bit(to);
+
+            if ((empty & target) != 0) {
+                count = addPawnMove(PackedMove.encode(from, to, Kind.PAWN), (target & lastRank) != 0, moves, count);
+
+                int to2 = to + forward;
+                if (to2 >= 0 && to2 < 64 && (bit(to2) & doubleMoveRank & empty) != 0) {
+                    moves[count++] = PackedMove.encode(from, to2, Kind.PAWN) | PackedMove.DOUBLE_PAWN_MOVE;
+                }
+            }
+
+            long captures = Bitboards.pawnAttacksFrom(from, color);
+            long targets = captures & enemyPieces;
+
+            while (targets != 0) {
+                to = Long.numberOfTrailingZeros(targets);
+                count = addPawnMove(PackedMove.encodeCapture(from, to, Kind.PAWN, KINDS[kindAt(bitboards, enemy, to)]),
+                        (bit(to) & lastRank) != 0, moves, count);
+                targets &= targets - 1;
+            }
+
+            if (enPassantSquare >= 0 && (captures & bit(enPassantSquare)) != 0) {
+                moves[count++] = PackedMove.encodeCapture(from, enPassantSquare, Kind.PAWN, Kind.PAWN) | PackedMove.EN_PASSANT;
+            }
+
+            pawns &= pawns - 1;
+        }
+
+        return count;
+    }
+
+    private static int generateCastling(long[] bitboards, Color color, int castlingRights, int[] moves, int count) {
+        Color enemy = color.opposite();
+        int base = color.ordinal() * 6;
+        int kingSquare = color == WHITE ? 4 : 60;
+        long occupied = bitboards[ALL_PIECES];
+
+        if ((castlingRights & castlingFlag(color, ChessBoard.Castling.KING)) != 0 &&
+                (bitboards[base + KING] & bit(kingSquare)) != 0 &&
+                (bitboards[base + ROOK] & bit(kingSquare + 3)) != 0 &&
+                (occupied & (bit(kingSquare + 1) | bit(kingSquare + 2))) == 0 &&
+                !Bitboards.isSquareAttacked(bitboards, kingSquare, enemy) &&
+                !Bitboards.isSquareAttacked(bitboards, kingSquare + 1, enemy) &&
+                !Bitboards.isSquareAttacked(bitboards, kingSquare + 2, enemy)) {
+            moves[count++] = PackedMove.encode(kingSquare, kingSquare + 2, Kind.KING) | PackedMove.CASTLING;
+        }
+
+        if ((castlingRights & castlingFlag(color, ChessBoard.Castling.QUEEN)) != 0 &&
+                (bitboards[base + KING] & bit(kingSquare)) != 0 &&
+                (bitboards[base + ROOK] & bit(kingSquare - 4)) != 0 &&
+                (occupied & (bit(kingSquare - 1) | bit(kingSquare - 2) | bit(kingSquare - 3))) == 0 &&
+                !Bitboards.isSquareAttacked(bitboards, kingSquare, enemy) &&
+                !Bitboards.isSquareAttacked(bitboards, kingSquare - 1, enemy) &&
+                !Bitboards.isSquareAttacked(bitboards, kingSquare - 2, enemy)) {
+            moves[count++] = PackedMove.encode(kingSquare, kingSquare - 2, Kind.KING) | PackedMove.CASTLING;
+        }
+
+        return count;
+    }
+
+    // генерирует псевдолегальные ходы стороны color в moves начиная с индекса count. Возвращает новое количество ходов в moves
+    static int generate(long[] bitboards, Color color, int castlingRights, int enPassantSquare, int[] moves, int count) {
+        Color enemy = color.opposite();
+        int base = color.ordinal() * 6;
+        long occupied = bitboards[ALL_PIECES];
+        long targets = ~bitboards[Bitboards.colorIndex(color)] & ~bitboards[enemy.ordinal() * 6 + KING];
+        long pieces;
+
+        count = generatePawnMoves(bitboards, color, enPassantSquare, moves, count);
+
+        for (pieces = bitboards[base + KNIGHT]; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            count = addMoves(bitboards, enemy, Kind.KNIGHT, from, Bitboards.knightAttacksFrom(from) & targets, moves, count);
+        }
+        for (pieces = bitboards[base + BISHOP]; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            count = addMoves(bitboards, enemy, Kind.BISHOP, from, Bitboards.bishopAttacks(from, occupied) & targets, moves, count);
+        }
+        for (pieces = bitboards[base + ROOK]; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            count = addMoves(bitboards, enemy, Kind.ROOK, from, Bitboards.rookAttacks(from, occupied) & targets, moves, count);
+        }
+        for (pieces = bitboards[base + QUEEN]; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            count = addMoves(bitboards, enemy, Kind.QUEEN, from,
+                    (Bitboards.rookAttacks(from, occupied) | Bitboards.bishopAttacks(from, occupied)) & targets, moves, count);
+        }
+        for (pieces = bitboards[base + KING]; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            count = addMoves(bitboards, enemy, Kind.KING, from, Bitboards.kingAttacksFrom(from) & targets, moves, count);
+        }
+
+        return generateCastling(bitboards, color, castlingRights, moves, count);
+    }
+
+    // не оставляет ли псевдолегальный ход move своего короля под шахом. Ход делается на копии битбордов в scratch
+    static boolean isLegal(long[] bitboards, Color color, int move, long[] scratch) {
+        if (PackedMove.isCastling(move)) {
+            return true;  // поля, через которые идет король, проверены при генерации рокировки
+        }
+
+        Color enemy = color.opposite();
+        int from = PackedMove.getFrom(move), to = PackedMove.getTo(move);
+        long fromTo = bit(from) | bit(to);
+
+        System.arraycopy(bitboards, 0, scratch, 0, Bitboards.COUNT);
+        scratch[Bitboards.pieceIndex(PackedMove.getKind(move), color)] ^= fromTo;
+        scratch[Bitboards.colorIndex(color)] ^= fromTo;
+
+        if (PackedMove.isCapture(move)) {
+            int taken = PackedMove.isEnPassant(move) ? (color == WHITE ? to - 8 : to + 8) : to;
+
+            scratch[Bitboards.pieceIndex(PackedMove.getTakenKind(move), enemy)] &= ~bit(taken);
+            scratch[Bitboards.colorIndex(enemy)] &= ~bit(taken);
+        }
+        scratch[ALL_PIECES] = scratch[Bitboards.WHITE_PIECES] | scratch[Bitboards.BLACK_PIECES];
+
+        long king = scratch[color.ordinal() * 6 + KING];
+        return king == 0 || !Bitboards.isSquareAttacked(scratch, Long.numberOfTrailingZeros(king), enemy);
+    }
+
+    // есть ли у стороны color хотя бы один легальный ход. Позиция задается только битбордами, объект ChessBoard не нужен
+    static boolean hasLegalMove(long[] bitboards, Color color, int castlingRights, int enPassantSquare) {
+        return hasLegalMove(bitboards, color, castlingRights, enPassantSquare, new int[ChessBoard.MAX_MOVES], new long[Bitboards.COUNT]);
+    }
+
+    // то же с буферами вызывающего: moves на MAX_MOVES ходов и scratch на Bitboards.COUNT битбордов
+    static boolean hasLegalMove(long[] bitboards, Color color, int castlingRights, int enPassantSquare, int[] moves, long[] scratch) {
+        int count = generate(bitboards, color, castlingRights, enPassantSquare, moves, 0);
+
+        for (int i = 0; i < count; i++) {
+            if (isLegal(bitboards, color, moves[i], scratch)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
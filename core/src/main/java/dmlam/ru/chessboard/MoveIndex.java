@@ -0,0 +1,123 @@
+package dmlam.ru.chessboard;
+
+// соответствие идентификатора хода ходу для всего дерева вариантов партии.
+// Открытая адресация с линейным пробированием по int-ключам: ни упаковки в Integer, ни объектов на каждую запись
+final class MoveIndex {
+    private static final int EMPTY = 0;  // id хода всегда больше 0
+
+    private int[] keys;
+    private Move[] values;
+    private int size = 0;
+    private boolean valid = true;  // false, если id какого-то из ходов изменился после добавления (Move.shiftMoveId)
+
+    MoveIndex() {
+        keys = new int[64];
+        values = new Move[64];
+    }
+
+    private int slot(int id) {
+        return (id * 0x9E3779B9) & (keys.length - 1);  // подряд идущие id попадают в разные ячейки
+    }
+
+    Move get(int id) {
+        for (int i = slot(id); keys[i] != EMPTY; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == id) {
+                return values[i];
+            }
+        }
+
+        return null;
+    }
+
+    void put(Move move) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            grow();
+        }
+
+        int id = move.getMoveId();
+        int i = slot(id);
+
+        while (keys[i] != EMPTY && keys[i] != id) {
+            i = (i + 1) & (keys.length - 1);
+        }
+        if (keys[i] == EMPTY) {
+            keys[i] = id;
+            size++;
+        }
+        values[i] = move;
+        move.index = this;
+    }
+
+    void remove(int id) {
+        int mask = keys.length - 1;
+        int i = slot(id);
+
+        while (keys[i] != id) {
+            if (keys[i] == EMPTY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        values[i].index = null;
+
+        // удаляем со сдвигом следующих элементов цепочки на освободившееся место, чтобы не оставлять "дыр" для поиска
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        values[i] = null;
+        size--;
+    }
+
+    // добавляет ход и все ходы его вариантов
+    void putLine(Move line) {
+        put(line);
+        putAll(line.getVariants());
+    }
+
+    void putAll(MoveList moves) {
+        for (int i = 0; i < moves.size(); i++) {
+            putLine(moves.get(i));
+        }
+    }
+
+    // удаляет ход и все ходы его вариантов
+    void removeLine(Move line) {
+        remove(line.getMoveId());
+        for (int i = 0; i < line.getVariants().size(); i++) {
+            removeLine(line.getVariants().get(i));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Move[] oldValues = values;
+
+        keys = new int[oldKeys.length * 2];
+        values = new Move[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldValues[i]);
+            }
+        }
+    }
+}
@@ -12,6 +12,35 @@ public class MoveList extends ArrayList<Move> {
     private static final String LOGTAG = MoveList.class.getName();
 
     private String comment = null; // comment on the variant. May be placed before the first move of the variant
+    private final Move owner;      // the move these moves are variants of (null for the first moves of a game)
+
+    public MoveList() {
+        this(null);
+    }
+
+    MoveList(Move owner) {
+        this.owner = owner;
+    }
+
+    @Override
+    public boolean add(Move move) {
+        move.prevMove = owner;
+        return super.add(move);
+    }
+
+    @Override
+    public void add(int index, Move move) {
+        move.prevMove = owner;
+        super.add(index, move);
+    }
+
+    @Override
+    public Move remove(int index) {
+        Move result = super.remove(index);
+
+        result.prevMove = null;
+        return result;
+    }
 
     public Move locateMove(int id) {
         for (int i = 0; i < size(); i++) {
@@ -91,7 +120,7 @@ public class MoveList extends ArrayList<Move> {
 
     public Move removeLine(int index) {
         Move result = remove(index);
-        result.prevVariants = null;
+        result.prevVariants = null;  // prevMove is cleared by remove
 
         return result;
     }
@@ -119,6 +148,9 @@ public class MoveList extends ArrayList<Move> {
 
     @Override
     public void clear() {
+        for (int i = 0; i < size(); i++) {
+            get(i).prevMove = null;
+        }
         super.clear();
 
         comment = null;
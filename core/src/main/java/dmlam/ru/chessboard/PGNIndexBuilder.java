@@ -0,0 +1,182 @@
+package dmlam.ru.chessboard;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// параллельное построение индекса партий PGN файла.
+// Файл делится на диапазоны байт, по задаче на диапазон. Партия относится к диапазону, в котором лежит ее первый байт.
+// Начала партий ищутся просмотром байт: строка, начинающаяся с '[', после строки, не являющейся тэгом.
+// С проверкой каждая партия диапазона еще и разбирается с проигрыванием ходов. Партии с ошибками остаются в индексе
+// (только пишутся в лог), чтобы номера следующих партий не сдвигались.
+class PGNIndexBuilder {
+    private static final String LOGTAG = PGNIndexBuilder.class.getName();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;  // меньшие файлы не имеет смысла делить
+    private static final int LOOKBEHIND = 4096;              // сколько байт перед диапазоном читается, чтобы узнать предыдущую строку
+    private static final int[] BOM = {0xEF, 0xBB, 0xBF};
+
+    private final String fileName;
+    private final boolean validate;
+
+    // смещения партий, найденные в одном диапазоне
+    private static class Offsets {
+        long[] values = new long[256];
+        int count = 0;
+
+        void add(long offset) {
+            if (count == values.length) {
+                long[] newValues = new long[values.length * 2];
+
+                System.arraycopy(values, 0, newValues, 0, count);
+                values = newValues;
+            }
+            values[count++] = offset;
+        }
+    }
+
+    PGNIndexBuilder(String fileName, boolean validate) {
+        this.fileName = fileName;
+        this.validate = validate;
+    }
+
+    // возвращает по возрастанию смещения начала партий, первый байт которых лежит в диапазоне [from, to)
+    long[] build(long from, long to) throws IOException {
+        long size = to - from;
+        int chunks = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_CHUNK_SIZE));
+        ExecutorService executor = Executors.newFixedThreadPool(chunks);
+        ArrayList<Future<Offsets>> futures = new ArrayList<>(chunks);
+        long[] result;
+
+        try {
+            for (int i = 0; i < chunks; i++) {
+                final long start = from + size * i / chunks;
+                final long end = from + size * (i + 1) / chunks;
+
+                futures.add(executor.submit(new Callable<Offsets>() {
+                    @Override
+                    public Offsets call() throws IOException {
+                        return indexRange(start, end);
+                    }
+                }));
+            }
+
+            int count = 0;
+            for (Future<Offsets> future : futures) {
+                count += future.get().count;
+            }
+
+            result = new long[count];
+            count = 0;
+            for (Future<Offsets> future : futures) {
+                Offsets offsets = future.get();
+
+                System.arraycopy(offsets.values, 0, result, count, offsets.count);
+                count += offsets.count;
+            }
+        } catch (InterruptedException E) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("PGN indexing interrupted");
+        } catch (ExecutionException E) {
+            if (E.getCause() instanceof IOException) {
+                throw (IOException) E.getCause();
+            }
+            throw new RuntimeException(E.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    private Offsets indexRange(long start, long end) throws IOException {
+        Offsets result = new Offsets();
+        FileInputStream in = new FileInputStream(fileName);
+
+        try {
+            if (!validate) {
+                findGameStarts(in, start, end, false, result);
+            } else {
+                PGNLoader loader = new PGNLoader();
+                long offset = findGameStart(in, start, end);
+
+                while (offset >= 0) {
+                    PGNReader reader;
+
+                    in.getChannel().position(offset);
+                    reader = new PGNReader(Channels.newInputStream(in.getChannel()), offset);
+                    try {
+                        while (loader.readGame(reader) != null && reader.getGameOffset() < end) {
+                            result.add(reader.getGameOffset());
+                        }
+                        break;
+                    } catch (Exception E) {
+                        long gameOffset = Math.max(offset, reader.getGameOffset());
+
+                        Diagnostics.logError(LOGTAG, String.format(LOGTAG + " Error reading PGN file %s (game at %d):\n%s", fileName, gameOffset, E.getMessage()));
+
+                        // партия с ошибкой остается в индексе: иначе сдвинутся номера всех следующих партий,
+                        // а ошибка снова будет выдана при ее загрузке. Продолжаем со следующей партии
+                        if (gameOffset < end && (result.count == 0 || result.values[result.count - 1] < gameOffset)) {
+                            result.add(gameOffset);
+                        }
+                        offset = findGameStart(in, gameOffset + 1, end);
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        return result;
+    }
+
+    private static long findGameStart(FileInputStream in, long start, long end) throws IOException {
+        Offsets offsets = new Offsets();
+
+        findGameStarts(in, start, end, true, offsets);
+
+        return offsets.count > 0 ? offsets.values[0] : -1;
+    }
+
+    // ищет начала партий в диапазоне [start, end): строку, начинающуюся с '[', перед которой последняя
+    // непустая строка не была тэгом (не заканчивалась на ']'). Если first - только первое из них
+    private static void findGameStarts(FileInputStream in, long start, long end, boolean first, Offsets offsets) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long p = Math.max(0, start - LOOKBEHIND);
+        int lastChar = p == 0 ? '\n' : 0;  // в начале файла считаем, что перед ним перевод строки
+        int lastSignificant = 0;           // последний непробельный символ
+        int n;
+
+        in.getChannel().position(p);
+        while (p < end && (n = in.read(buffer)) > 0) {
+            for (int i = 0; i < n && p < end; i++, p++) {
+                int c = buffer[i] & 0xFF;
+
+                if (p < BOM.length && c == BOM[(int) p]) {
+                    continue;
+                }
+
+                if (c == '[' && lastChar == '\n' && lastSignificant != ']' && p >= start) {
+                    offsets.add(p);
+                    if (first) {
+                        return;
+                    }
+                }
+
+                if (c > ' ') {
+                    lastSignificant = c;
+                }
+                lastChar = c;
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package dmlam.ru.chessboard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Created by LamdanDY on 25.08.2016.
+ */
+
+
+public class PGNLoader {
+    private static final String LOGTAG = PGNLoader.class.getName();
+
+    private int lineNum = 0;
+
+    private static final int INDEX_SIGNATURE = 0x50474E49;  // "PGNI"
+    private static final int INDEX_VERSION = 2;
+    private static final int INDEX_HEADER_SIZE = 36;
+    private static final int CHECKSUM_BLOCK = 4096;
+
+
+    String fileName;
+    private long[] gamesIndex = new long[64];  // смещения начала партий в файле
+    private int gamesCount = 0;
+    private boolean validateIndex = true;     // при построении индекса проверять ходы всех партий
+    private boolean trustedImport = false;    // ходы не проверяются на правильность (см. ChessBoard.MoveMode.TRUSTED)
+    // состояние PGN файла, по которому построен индекс
+    private long indexedSize, indexedModified, indexedChecksum;
+    private ChessBoard chessboard;
+    private GameBuilder gameBuilder = new GameBuilder();
+
+    // строит партию по событиям PGNReader, проигрывая ходы на доске
+    private class GameBuilder implements IPGNListener {
+        private Game game;
+        private boolean hasTags;
+        private int moveNumber;                   // номер хода, указанный в файле перед очередным ходом (0 - не указан)
+        private Piece.Color moveOrder;
+        private Move lineStart;                   // первый ход текущей линии
+        private String lineComment;               // комментарий к линии, в которой еще нет ходов
+        private ArrayList<Move> lineStarts = new ArrayList<>();
+        private ArrayList<Integer> variationMoves = new ArrayList<>();  // ходы, к которым относятся открытые варианты
+
+        void begin(Game game) {
+            this.game = game;
+            hasTags = false;
+            chessboard = null;
+            moveNumber = 0;
+            moveOrder = null;
+            lineStart = null;
+            lineComment = null;
+            lineStarts.clear();
+            variationMoves.clear();
+        }
+
+        boolean hasTags() {
+            return hasTags;
+        }
+
+        private void startMoves() {
+            if (chessboard == null) {
+                String FEN = game.tagByName("FEN");
+
+                chessboard = new ChessBoard();
+                chessboard.setLogMoves(false);  // ходы разбираемых партий в отчет о падении не попадают
+                if (trustedImport) {
+                    chessboard.setMoveMode(ChessBoard.MoveMode.TRUSTED);
+                }
+                if (FEN == null) {
+                    FEN = chessboard.STARTING_POSITION_FEN;
+                }
+                game.setStartPosition(FEN);
+                chessboard.loadFromFEN(FEN);
+            }
+        }
+
+        private Move lastMove() throws PGNError {
+            startMoves();
+
+            Move result = chessboard.getLastMove();
+            if (result == null) {
+                throw new PGNError("Move expected");
+            }
+
+            return result;
+        }
+
+        private void setLineComment() {
+            if (lineComment != null) {
+                if (chessboard.getLastMove() != null) {
+                    chessboard.getLastMove().getVariants().setComment(lineComment);
+                } else {
+                    chessboard.getFirstMoveVariants().setComment(lineComment);
+                }
+                lineComment = null;
+            }
+        }
+
+        @Override
+        public void onTag(String name, String value) {
+            hasTags = true;
+            if (game.tagByName(name) == null) {
+                game.addTag(name, value);
+            }
+        }
+
+        @Override
+        public void onMoveNumber(int moveNumber, Piece.Color moveOrder) {
+            this.moveNumber = moveNumber;
+            this.moveOrder = moveOrder;
+        }
+
+        @Override
+        public void onMove(String move) throws PGNError {
+            startMoves();
+
+            if (chessboard.getLastMove() == null) {
+                chessboard.setNextMoveNumber(moveNumber > 0 ? moveNumber : 1);
+            }
+
+            if (!chessboard.shortMove(moveOrder != null ? moveOrder : chessboard.getMoveOrder(), move, true)) {
+                throw new PGNError(String.format("Incorrect move '%s'", move));
+            }
+            moveNumber = 0;
+            moveOrder = null;
+
+            setLineComment();
+            if (lineStart == null) {
+                lineStart = chessboard.getLastMove();
+            }
+        }
+
+        @Override
+        public void onNumericAnnotationGlyph(int glyph) throws PGNError {
+            lastMove().setNumericAnnotationGlyph(glyph);
+        }
+
+        @Override
+        public void onAnnotation(String annotation) throws PGNError {
+            lastMove().setAnnotation(annotation);
+        }
+
+        @Override
+        public void onComment(String comment) throws PGNError {
+            startMoves();
+
+            if (lineStart == null) {
+                // комментарий перед первым ходом линии относится ко всей линии
+                lineComment = lineComment == null ? comment : lineComment + ' ' + comment;
+            } else {
+                Move move = chessboard.getLastMove();
+                String oldComment = move.getComment();
+
+                move.setComment(oldComment == null ? comment : oldComment + ' ' + comment);
+            }
+        }
+
+        @Override
+        public void onVariationStart() throws PGNError {
+            variationMoves.add(lastMove().getMoveId());
+            lineStarts.add(lineStart);
+            lineStart = null;
+
+            chessboard.rollback();
+        }
+
+        @Override
+        public void onVariationEnd() throws PGNError {
+            setLineComment();
+            if (lineStart != null) {
+                chessboard.moveVariantDown(lineStart);
+            }
+
+            lineStart = lineStarts.remove(lineStarts.size() - 1);
+            chessboard.gotoMove(variationMoves.remove(variationMoves.size() - 1));
+        }
+
+        @Override
+        public void onGameEnd(Game.GameResult result) {
+            startMoves();
+            setLineComment();
+
+            if (result != null) {
+                if (chessboard.getLastMove() != null) {
+                    chessboard.getLastMove().setGameResult(result);
+                }
+                game.setResult(result);
+            }
+            game.setMoves(chessboard.getFirstMoveVariants());
+        }
+    }
+
+    Game readGame(PGNReader reader) throws PGNError, IOException {
+        Game result = new Game();
+
+        gameBuilder.begin(result);
+        try {
+            if (!reader.readGame(gameBuilder) || !gameBuilder.hasTags()) {
+                result = null;
+            }
+        } finally {
+            lineNum = reader.getLineNumber() + 1;
+        }
+
+        return result;
+    }
+
+    private void addGameOffset(long offset) {
+        if (gamesCount == gamesIndex.length) {
+            long[] newIndex = new long[Math.max(64, gamesIndex.length * 2)];
+
+            System.arraycopy(gamesIndex, 0, newIndex, 0, gamesCount);
+            gamesIndex = newIndex;
+        }
+        gamesIndex[gamesCount++] = offset;
+    }
+
+    // контрольная сумма первых и последних CHECKSUM_BLOCK байт из первых size байт файла.
+    // Если после дописывания в конец файла она для прежнего размера не изменилась, достаточно проиндексировать добавленное
+    private static long checksum(String fileName, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[CHECKSUM_BLOCK];
+        RandomAccessFile f = new RandomAccessFile(fileName, "r");
+
+        try {
+            int n = (int) Math.min(size, CHECKSUM_BLOCK);
+
+            f.readFully(buf, 0, n);
+            crc.update(buf, 0, n);
+
+            f.seek(size - n);
+            f.readFully(buf, 0, n);
+            crc.update(buf, 0, n);
+        } finally {
+            f.close();
+        }
+
+        return crc.getValue();
+    }
+
+    // строит индекс заново (from == 0) или дописывает в него партии, начинающиеся с from
+    private void createFileIndex(String fileName, String indexFileName, long from) throws PGNError {
+        File f = new File(fileName);
+        // размер и время изменения берем до чтения файла: если он растет, следующее обновление доиндексирует остальное
+        long size = f.length();
+        long modified = f.lastModified();
+
+        try {
+            long[] offsets = new PGNIndexBuilder(fileName, validateIndex).build(from, size);
+
+            if (from == 0) {
+                gamesCount = 0;
+            }
+            for (long offset : offsets) {
+                addGameOffset(offset);
+            }
+
+            indexedSize = size;
+            indexedModified = modified;
+            indexedChecksum = checksum(fileName, size);
+        } catch (FileNotFoundException E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + " PGN file not found (%s)", fileName));
+
+            throw new PGNError(String.format("PGN file not found (%s)\n%s", fileName, E.toString()));
+        } catch (IOException E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + " Error reading file %s:\n%s", fileName, E.toString()));
+
+            throw new PGNError(String.format("Error creating pgn index (%s)", fileName));
+        }
+
+        writeIndexFile(fileName, indexFileName);
+    }
+
+    // файл индекса: INDEX_SIGNATURE, INDEX_VERSION, размер, время изменения и контрольная сумма PGN файла,
+    // количество партий, смещения начала партий (long)
+    private void writeIndexFile(String fileName, String indexFileName) throws PGNError {
+        try {
+            File f = new File(indexFileName);
+
+            if (!f.exists()) {
+                f.createNewFile();
+                f.setWritable(true);
+            }
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+            try {
+                out.writeInt(INDEX_SIGNATURE);
+                out.writeInt(INDEX_VERSION);
+                out.writeLong(indexedSize);
+                out.writeLong(indexedModified);
+                out.writeLong(indexedChecksum);
+                out.writeInt(gamesCount);
+                for (int i = 0; i < gamesCount; i++) {
+                    out.writeLong(gamesIndex[i]);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + "Error writing index %s :\n%s", indexFileName, E.getMessage()));
+
+            throw new PGNError(String.format("Error creating pgn index (%s)", fileName));
+        }
+    }
+
+    // возвращает false, если индекс в старом формате и его нужно построить заново
+    private boolean loadIndexFile(String indexFileName) throws PGNError {
+        File f = new File(indexFileName);
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+            try {
+                if (f.length() < INDEX_HEADER_SIZE || in.readInt() != INDEX_SIGNATURE || in.readInt() != INDEX_VERSION) {
+                    return false;
+                }
+
+                indexedSize = in.readLong();
+                indexedModified = in.readLong();
+                indexedChecksum = in.readLong();
+
+                int count = in.readInt();
+                if (f.length() != INDEX_HEADER_SIZE + count * 8L) {
+                    throw new PGNError(String.format("Error reading PGN index file [size mismatch %d] (%s)", f.length(), indexFileName));
+                }
+
+                gamesCount = 0;
+                for (int i = 0; i < count; i++) {
+                    addGameOffset(in.readLong());
+                }
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + " PGN index file not found (%s)", indexFileName));
+            throw new PGNError(String.format("PGN index file not found (%s)\n%s", indexFileName, E.toString()));
+        } catch (IOException E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + " Error reading PGN index file (%s)", indexFileName));
+            throw new PGNError(String.format("Error reading PGN index file (%s)\n%s", indexFileName, E.toString()));
+        }
+
+        return true;
+    }
+
+    private boolean fileChanged(String fileName) {
+        File f = new File(fileName);
+
+        return f.length() != indexedSize || f.lastModified() != indexedModified;
+    }
+
+    private static String changeExtension(String fileName, String extension) {
+        int dot = fileName.lastIndexOf('.');
+
+        if (dot <= Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'))) {
+            // у файла нет расширения
+            return fileName + "." + extension;
+        }
+
+        return fileName.substring(0, dot + 1) + extension;
+    }
+
+    private void updateIndexFile(String fileName) throws PGNError {
+        String indexFileName = changeExtension(fileName, "gamesIndex");
+        File f = new File(indexFileName);
+
+        if (!f.exists() || !loadIndexFile(indexFileName)) {
+            createFileIndex(fileName, indexFileName, 0);
+        } else if (fileChanged(fileName)) {
+            long size = new File(fileName).length();
+            boolean appended = false;
+
+            try {
+                appended = size > indexedSize && checksum(fileName, indexedSize) == indexedChecksum;
+            } catch (IOException E) {
+                Diagnostics.logError(LOGTAG, String.format(LOGTAG + " Error reading file %s:\n%s", fileName, E.toString()));
+            }
+
+            if (appended && gamesCount > 0) {
+                // последняя партия могла быть записана не полностью - индексируем заново начиная с нее
+                createFileIndex(fileName, indexFileName, gamesIndex[--gamesCount]);
+            } else {
+                createFileIndex(fileName, indexFileName, 0);
+            }
+        }
+    }
+
+    // false - при построении индекса только искать начала партий, не разбирая ходы (намного быстрее)
+    public void setIndexValidation(boolean validate) {
+        validateIndex = validate;
+    }
+
+    // true - файл из надежного источника (например, сохраненный этой же программой): ходы не проверяются на правильность,
+    // а шах, мат и пат вычисляются только при обращении к ним. Ошибочный ход в таком режиме может дать неверную партию
+    public void setTrustedImport(boolean trusted) {
+        trustedImport = trusted;
+    }
+
+    public int getGamesCount() {
+        return gamesCount;
+    }
+
+    public Game getGame(String fileName, int index) throws PGNError {
+        Game result;
+
+        if (!fileName.equals(this.fileName) || fileChanged(fileName)) {
+            updateIndexFile(fileName);
+
+            this.fileName = fileName;
+        }
+
+        try {
+            FileInputStream fis = new FileInputStream(fileName);
+
+            try {
+                if (index < 0 || index >= gamesCount) {
+                    throw new IndexOutOfBoundsException(String.format("Game %d not found (%d games in file)", index, gamesCount));
+                }
+
+                long offset = gamesIndex[index];
+
+                // сразу переходим к началу партии, не читая предыдущие
+                fis.getChannel().position(offset);
+                result = readGame(new PGNReader(fis, offset));
+            } finally {
+                fis.close();
+            }
+        } catch (IOException E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + "Error reading PGN file %s (game %d, line %d):\n%s", fileName, index, lineNum, E.toString()));
+
+            throw new PGNError(String.format(LOGTAG + "Error reading PGN file %s (game %d, line %d, message '%s')", fileName, index, lineNum, E.getMessage()));
+        } catch (PGNError E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + "Error reading PGN file %s (game %d, line %d):\n%s", fileName, index, lineNum, E.toString()));
+
+            throw new PGNError(String.format(LOGTAG + "Error reading PGN file %s (game %d, line %d)", fileName, index, lineNum));
+        }
+
+        return result;
+    }
+
+    public Game getGame(String moves) throws PGNError {
+        Game result;
+
+        try {
+            result = readGame(new PGNReader(moves));
+        } catch (IOException E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + "Error reading PGN moves (%s, line %d): %s", moves, lineNum, E.toString()));
+
+            throw new PGNError(String.format(LOGTAG + "Error reading PGN moves (%s, line %d): %s", moves, lineNum, E.getMessage()));
+        } catch (PGNError E) {
+            Diagnostics.logError(LOGTAG, String.format(LOGTAG + "Error reading PGN moves (%s, line %d): %s", moves, lineNum, E.toString()));
+
+            throw new PGNError(String.format(LOGTAG + "Error reading PGN moves (%s, line %d): %s", moves, lineNum, E.getMessage()));
+        }
+
+        return result;
+    }
+
+}
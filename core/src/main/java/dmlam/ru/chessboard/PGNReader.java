@@ -0,0 +1,366 @@
+package dmlam.ru.chessboard;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static dmlam.ru.chessboard.Piece.Color.BLACK;
+import static dmlam.ru.chessboard.Piece.Color.WHITE;
+
+// потоковый разбор PGN.
+// Файл читается через буфер байт постоянного размера с курсором (из начала строки ничего не удаляется),
+// теги, ходы, комментарии и варианты передаются в IPGNListener. Ходы здесь не проверяются, доска читателю не нужна
+public class PGNReader {
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos = 0, limit = 0;
+    private long bufferOffset = 0;       // смещение начала буфера от начала файла
+    private int lineNum = 0;             // количество прочитанных переводов строки
+    private int lastChar = '\n';
+
+    private byte[] token = new byte[256];
+    private int tokenLength = 0;
+
+    private long gameOffset = -1;        // смещение и строка начала последней прочитанной партии
+    private int gameLine = 0;
+
+    public PGNReader(InputStream in) {
+        this(in, 0);
+    }
+
+    // поток, уже установленный на смещение offset от начала файла (позиции отсчитываются от начала файла)
+    public PGNReader(InputStream in, long offset) {
+        this.in = in;
+        this.bufferOffset = offset;
+    }
+
+    public PGNReader(String pgn) {
+        this(new ByteArrayInputStream(pgn.getBytes(CHARSET)));
+    }
+
+    // количество байт, прочитанных из потока
+    public long getPosition() {
+        return bufferOffset + pos;
+    }
+
+    public int getLineNumber() {
+        return lineNum;
+    }
+
+    public long getGameOffset() {
+        return gameOffset;
+    }
+
+    public int getGameLine() {
+        return gameLine;
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        pos = 0;
+        limit = 0;
+
+        int n = in.read(buffer);
+        if (n > 0) {
+            limit = n;
+        }
+
+        return limit > 0;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[pos] & 0xFF;
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+
+        if (c >= 0) {
+            pos++;
+            if (c == '\n') {
+                lineNum++;
+            }
+            lastChar = c;
+        }
+
+        return c;
+    }
+
+    private void appendToken(int c) {
+        if (tokenLength == token.length) {
+            byte[] newToken = new byte[token.length * 2];
+
+            System.arraycopy(token, 0, newToken, 0, tokenLength);
+            token = newToken;
+        }
+        token[tokenLength++] = (byte) c;
+    }
+
+    private String tokenString() {
+        return new String(token, 0, tokenLength, CHARSET);
+    }
+
+    private boolean tokenEquals(String s) {
+        if (s.length() != tokenLength) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSymbolChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || "+#=:-/_<>".indexOf(c) >= 0;
+    }
+
+    // пропускает пробелы, переводы строк и строки, начинающиеся с '%'. Возвращает следующий символ или -1
+    private int skipWhitespace() throws IOException {
+        int c = peek();
+
+        while (c >= 0) {
+            if (c == '%' && lastChar == '\n') {
+                while (c >= 0 && c != '\n') {
+                    c = next();
+                }
+            } else if (c == 0xEF && getPosition() == 0) {
+                // UTF-8 BOM в начале файла
+                next();
+                next();
+                next();
+            } else if (c <= ' ') {
+                next();
+            } else {
+                break;
+            }
+            c = peek();
+        }
+
+        return c;
+    }
+
+    // читает очередную партию. Возвращает false, если партий в потоке больше нет
+    public boolean readGame(IPGNListener listener) throws IOException, PGNError {
+        int c = skipWhitespace();
+
+        if (c < 0) {
+            return false;
+        }
+
+        gameOffset = getPosition();
+        gameLine = lineNum;
+
+        while (c == '[') {
+            readTag(listener);
+            c = skipWhitespace();
+        }
+
+        readMovetext(listener);
+
+        return true;
+    }
+
+    private void readTag(IPGNListener listener) throws IOException, PGNError {
+        int c;
+        String name;
+
+        next();  // '['
+        c = skipSpaces();
+
+        tokenLength = 0;
+        while (c > ' ' && c != '"' && c != ']') {
+            appendToken(next());
+            c = peek();
+        }
+        name = tokenString();
+
+        if (skipSpaces() != '"') {
+            throw new PGNError("Wrong PGN format (no space after tag name)");
+        }
+        next();
+
+        tokenLength = 0;
+        c = next();
+        while (c != '"') {
+            if (c < 0 || c == '\n') {
+                throw new PGNError("Unexpected end of line");
+            }
+            if (c == '\\') {
+                c = next();
+                if (c < 0) {
+                    throw new PGNError("Unexpected end of line");
+                }
+            }
+            appendToken(c);
+            c = next();
+        }
+
+        if (skipSpaces() != ']') {
+            throw new PGNError("Unexpected end of line");
+        }
+        next();
+
+        listener.onTag(name, tokenString());
+    }
+
+    // пропускает пробелы в пределах строки
+    private int skipSpaces() throws IOException {
+        int c = peek();
+
+        while (c == ' ' || c == '\t' || c == '\r') {
+            next();
+            c = peek();
+        }
+
+        return c;
+    }
+
+    private void readMovetext(IPGNListener listener) throws IOException, PGNError {
+        int depth = 0;
+
+        while (true) {
+            int c = skipWhitespace();
+
+            switch (c) {
+                case -1:
+                    listener.onGameEnd(null);
+                    return;
+                case '[':
+                    if (depth > 0) {
+                        throw new PGNError("Unexpected tag inside variation");
+                    }
+                    // следующая партия без результата у предыдущей
+                    listener.onGameEnd(null);
+                    return;
+                case '{':
+                    next();
+                    tokenLength = 0;
+                    for (c = next(); c != '}'; c = next()) {
+                        if (c < 0) {
+                            throw new PGNError("End of comment not found");
+                        }
+                        if (c == '\n') {
+                            appendToken(' ');
+                        } else if (c != '\r') {
+                            appendToken(c);
+                        }
+                    }
+                    listener.onComment(tokenString());
+                    break;
+                case ';':
+                    next();
+                    tokenLength = 0;
+                    for (c = peek(); c >= 0 && c != '\n'; c = peek()) {
+                        if (c != '\r') {
+                            appendToken(c);
+                        }
+                        next();
+                    }
+                    listener.onComment(tokenString());
+                    break;
+                case '(':
+                    next();
+                    depth++;
+                    listener.onVariationStart();
+                    break;
+                case ')':
+                    next();
+                    if (depth == 0) {
+                        throw new PGNError("Unexpected end of variation");
+                    }
+                    depth--;
+                    listener.onVariationEnd();
+                    break;
+                case '$':
+                    next();
+                    int glyph = 0;
+                    for (c = peek(); c >= '0' && c <= '9'; c = peek()) {
+                        glyph = glyph * 10 + c - '0';
+                        next();
+                    }
+                    listener.onNumericAnnotationGlyph(glyph);
+                    break;
+                case '*':
+                    next();
+                    listener.onGameEnd(Game.GameResult.UNKNOWN);
+                    return;
+                case '!':
+                case '?':
+                    tokenLength = 0;
+                    for (; c == '!' || c == '?'; c = peek()) {
+                        appendToken(next());
+                    }
+                    listener.onAnnotation(tokenString());
+                    break;
+                default:
+                    if (c >= '0' && c <= '9') {
+                        Game.GameResult result = readNumber(listener);
+
+                        if (result != null) {
+                            listener.onGameEnd(result);
+                            return;
+                        }
+                    } else if (isSymbolChar(c)) {
+                        tokenLength = 0;
+                        for (; isSymbolChar(c) || c == '.'; c = peek()) {
+                            appendToken(next());
+                        }
+                        if (!tokenEquals("e.p.")) {  // пометка взятия на проходе ничего не добавляет к ходу
+                            listener.onMove(tokenString());
+                        }
+                    } else {
+                        throw new PGNError(String.format("Unexpected character '%c'", (char) c));
+                    }
+            }
+        }
+    }
+
+    // номер хода, результат партии или ход, начинающийся с цифры (0-0)
+    private Game.GameResult readNumber(IPGNListener listener) throws IOException, PGNError {
+        boolean digits = true;
+        int c = peek();
+
+        tokenLength = 0;
+        for (; isSymbolChar(c); c = peek()) {
+            digits &= c >= '0' && c <= '9';
+            appendToken(next());
+        }
+
+        if (digits) {
+            int moveNumber = 0;
+            int dots = 0;
+
+            for (int i = 0; i < tokenLength; i++) {
+                moveNumber = moveNumber * 10 + token[i] - '0';
+            }
+
+            for (c = skipSpaces(); c == '.'; c = peek()) {
+                dots++;
+                next();
+            }
+
+            listener.onMoveNumber(moveNumber, dots == 0 ? null : dots == 1 ? WHITE : BLACK);
+        } else if (tokenEquals("1-0")) {
+            return Game.GameResult.WHITE;
+        } else if (tokenEquals("0-1")) {
+            return Game.GameResult.BLACK;
+        } else if (tokenEquals("1/2-1/2") || tokenEquals("1/2")) {
+            return Game.GameResult.DRAW;
+        } else {
+            listener.onMove(tokenString());
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package dmlam.ru.chessboard;
+
+import dmlam.ru.chessboard.Piece.Kind;
+
+// ход, упакованный в int: так его возвращает ChessBoard.generateMoves и принимает ChessBoard.makeMove.
+// биты 0-5   - поле, откуда ход (x + y * 8)
+// биты 6-11  - поле, куда ход
+// биты 12-14 - вид ходящей фигуры (Kind.ordinal())
+// биты 15-17 - вид взятой фигуры
+// биты 18-20 - вид фигуры, в которую превращается пешка
+// биты 21-25 - флаги
+public final class PackedMove {
+    public static final int CAPTURE = 1 << 21;
+    public static final int EN_PASSANT = 1 << 22;
+    public static final int CASTLING = 1 << 23;
+    public static final int DOUBLE_PAWN_MOVE = 1 << 24;
+    public static final int PROMOTION = 1 << 25;
+
+    public static final int NO_MOVE = 0;  // ход с поля a1 на a1 - не бывает
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, Kind kind) {
+        return from | (to << 6) | (kind.ordinal() << 12);
+    }
+
+    public static int encodeCapture(int from, int to, Kind kind, Kind takenKind) {
+        return encode(from, to, kind) | (takenKind.ordinal() << 15) | CAPTURE;
+    }
+
+    public static int getFrom(int move) {
+        return move & 0x3F;
+    }
+
+    public static int getTo(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static Kind getKind(int move) {
+        return KINDS[(move >>> 12) & 7];
+    }
+
+    // взятая фигура или null, если ход не является взятием
+    public static Kind getTakenKind(int move) {
+        return (move & CAPTURE) != 0 ? KINDS[(move >>> 15) & 7] : null;
+    }
+
+    // фигура, в которую превращается пешка, или null
+    public static Kind getPromotion(int move) {
+        return (move & PROMOTION) != 0 ? KINDS[(move >>> 18) & 7] : null;
+    }
+
+    public static int setPromotion(int move, Kind kind) {
+        return move | (kind.ordinal() << 18) | PROMOTION;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & CASTLING) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & PROMOTION) != 0;
+    }
+
+    // ход в записи вроде "e2e4" или "e7e8q" (как принимает ChessBoard.fromtomove)
+    public static String toString(int move) {
+        StringBuilder sb = new StringBuilder(5);
+        int from = getFrom(move), to = getTo(move);
+
+        sb.append(ChessBoard.squareName(Bitboards.squareX(from), Bitboards.squareY(from)))
+                .append(ChessBoard.squareName(Bitboards.squareX(to), Bitboards.squareY(to)));
+        if (isPromotion(move)) {
+            sb.append(Character.toLowerCase(getPromotion(move).getNotationLetter().charAt(0)));
+        }
+
+        return sb.toString();
+    }
+}
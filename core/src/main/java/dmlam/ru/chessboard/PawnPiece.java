@@ -1,7 +1,5 @@
 package dmlam.ru.chessboard;
 
-import android.graphics.Point;
-
 /**
  * Created by Lam on 13.06.2015.
  */
@@ -48,13 +46,8 @@ public class PawnPiece extends Piece {
                     result = targetPiece.getColor() != color && targetPiece.getKind() != Kind.KING;
                 else {
                     // взятие на проходе
-                    Point ep = chessBoard.getEnPassantSquare();
-
                     // предыдущий ход был ходом пешки на две клетки и именно через ту клетку, которую проверяем на возможность хода туда
-                    if (ep != null)
-                        result = ep.x == x && ep.y == y;
-                    else
-                        result = false;
+                    result = chessBoard.getEnPassantIndex() == Bitboards.square(x, y);
                 }
             } else
                 result = false;
@@ -70,11 +63,11 @@ public class PawnPiece extends Piece {
 
 
         if (y - oldY == 2) {
-            chessBoard.setEnPassantSquare(new Point(x, y - 1));
+            chessBoard.setEnPassantIndex(Bitboards.square(x, y - 1));
         }
         else
         if (y - oldY == -2) {
-            chessBoard.setEnPassantSquare(new Point(x, y + 1));
+            chessBoard.setEnPassantIndex(Bitboards.square(x, y + 1));
         }
 
         super.moveTo(x, y);
@@ -99,13 +92,9 @@ public class PawnPiece extends Piece {
         super.testMoveTo(x, y);
 
         // Был ли последний ход ходом пешки на две клетки?
-        Point ep = chessBoard.getEnPassantSquare();
-
-        if (ep != null) {
-            if (ep.x == x && ep.y == y) {
-                testMoveTakenPiece = chessBoard.getPiece(x, color == Color.WHITE ? 4 : 3);
-                chessBoard.setPieceAt(testMoveTakenPiece.getX(), testMoveTakenPiece.getY(), null);
-            }
+        if (chessBoard.getEnPassantIndex() == Bitboards.square(x, y)) {
+            testMoveTakenPiece = chessBoard.getPiece(x, color == Color.WHITE ? 4 : 3);
+            chessBoard.setPieceAt(testMoveTakenPiece.getX(), testMoveTakenPiece.getY(), null);
         }
     }
 
@@ -138,16 +127,16 @@ public class PawnPiece extends Piece {
 
         switch (promotion) {
             case QUEEN:
-                chessBoard.setPieceAt(x, y, new QueenPiece(chessBoard, chessBoard.getMoveOrder(), x, y));
+                chessBoard.obtainPiece(Kind.QUEEN, chessBoard.getMoveOrder(), x, y);
                 break;
             case ROOK:
-                chessBoard.setPieceAt(x, y, new RookPiece(chessBoard, chessBoard.getMoveOrder(), x, y));
+                chessBoard.obtainPiece(Kind.ROOK, chessBoard.getMoveOrder(), x, y);
                 break;
             case BISHOP:
-                chessBoard.setPieceAt(x, y, new BishopPiece(chessBoard, chessBoard.getMoveOrder(), x, y));
+                chessBoard.obtainPiece(Kind.BISHOP, chessBoard.getMoveOrder(), x, y);
                 break;
             case KNIGHT:
-                chessBoard.setPieceAt(x, y, new KnightPiece(chessBoard, chessBoard.getMoveOrder(), x, y));
+                chessBoard.obtainPiece(Kind.KNIGHT, chessBoard.getMoveOrder(), x, y);
                 break;
         }
         lastMove.setPromotePawnTo(promotion);
@@ -155,12 +144,7 @@ public class PawnPiece extends Piece {
 
     @Override
     public boolean isSquareThreaten(int x, int y) {
-        boolean result = false;
-        int delta = color == Color.WHITE ? 1 : -1;
-
-        result = (y == this.y + delta) && (x == this.x + 1 || x == this.x - 1);
-
-        return result;
+        return isInAttacks(Bitboards.pawnAttacksFrom(Bitboards.square(this.x, this.y), color), x, y);
     }
 
 }
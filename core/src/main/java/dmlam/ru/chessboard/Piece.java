@@ -1,7 +1,5 @@
 package dmlam.ru.chessboard;
 
-import android.graphics.Point;
-
 import java.util.ArrayList;
 
 /**
@@ -102,6 +100,13 @@ public abstract class Piece {
     static public Piece createPiece(ChessBoard chessBoard, Kind kind, Color color, Point p) {
         return createPiece(chessBoard, kind, color, p.x, p.y);
     }
+    // сброс состояния фигуры, взятой из пула ChessBoard для повторного использования
+    void reset() {
+        lastMove = null;
+        testMoveTakenPiece = null;
+        availableMoves.clear();
+    }
+
     public int getID () {
         return kind.ordinal() + color.ordinal() * 6;
     }
@@ -185,6 +190,11 @@ public abstract class Piece {
     // возвращает true если указанное поле находится под боем данной фигуры
     public abstract boolean isSquareThreaten(int x, int y);
 
+    // попадает ли поле (x, y) в битборд атак фигуры
+    static boolean isInAttacks(long attacks, int x, int y) {
+        return x >= 0 && x < 8 && y >= 0 && y < 8 && (attacks & Bitboards.bit(Bitboards.square(x, y))) != 0;
+    }
+
     // возвращает true, если данная фигура может переместиться на указанное поле
     public boolean isMovePossible (int x, int y) {
 
@@ -234,14 +244,7 @@ public abstract class Piece {
 
                 if (piece == null || (piece.getColor() != color && piece.getKind() != Kind.KING)) {
                     // физически ход возможен, проверим не будет ли после этого наш король под шахом
-                    chessBoard.beginUpdate();
-                    try {
-                        testMoveTo(x, y);
-                        result = !chessBoard.isInCheck(color);
-                        testMoveRollback();
-                    } finally {
-                        chessBoard.endUpdate(false);
-                    }
+                    result = chessBoard.isMoveLegal(this, x, y);
                     if (result) {
                         availableMoves.add(new Point(x, y));
                         result = true;
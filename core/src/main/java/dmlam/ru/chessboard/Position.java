@@ -0,0 +1,214 @@
+package dmlam.ru.chessboard;
+
+import java.util.Arrays;
+
+import dmlam.ru.chessboard.Piece.Color;
+import dmlam.ru.chessboard.Piece.Kind;
+
+import static dmlam.ru.chessboard.Piece.Color.BLACK;
+import static dmlam.ru.chessboard.Piece.Color.WHITE;
+
+// неизменяемая позиция: битборды фигур, очередь хода, рокировки, поле взятия на проходе и счетчики ходов.
+// В отличие от ChessBoard в ней нет слушателей, дерева ходов и объектов фигур, поэтому ее можно передавать между потоками.
+// Ходы - int из PackedMove; play() возвращает новую позицию и эту не меняет
+public final class Position {
+    private final long[] bitboards;  // см. Bitboards. Массив не выдается наружу и после конструктора не меняется
+    private final Color moveOrder;
+    private final int castling;        // флаги рокировок (MoveGenerator.castlingFlag)
+    private final int enPassantSquare; // поле, через которое только что прошла пешка, или -1
+    private final int halfmoveQnt;
+    private final int moveNumber;
+    private final long hash;
+
+    Position(long[] bitboards, Color moveOrder, int castling, int enPassantSquare, int halfmoveQnt, int moveNumber) {
+        this.bitboards = bitboards;
+        this.moveOrder = moveOrder;
+        this.castling = castling;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveQnt = halfmoveQnt;
+        this.moveNumber = moveNumber;
+        this.hash = calculateHash();
+    }
+
+    public static Position fromFEN(String FEN) {
+        ChessBoard board = new ChessBoard();
+
+        board.loadFromFEN(FEN);
+        return board.getPosition();
+    }
+
+    public String toFEN() {
+        return toSnapshot().toFEN();
+    }
+
+    PositionSnapshot toSnapshot() {
+        return new PositionSnapshot(bitboards, castling, enPassantSquare, moveOrder, halfmoveQnt, moveNumber);
+    }
+
+    // тот же хеш, что ChessBoard.getPositionHash() для этой позиции
+    private long calculateHash() {
+        long result = moveOrder == BLACK ? Zobrist.BLACK_TO_MOVE : 0;
+
+        for (int piece = 0; piece < 12; piece++) {
+            for (long b = bitboards[piece]; b != 0; b &= b - 1) {
+                result ^= Zobrist.piece(piece, Long.numberOfTrailingZeros(b));
+            }
+        }
+
+        // ключ взятия на проходе учитывается, только если рядом есть пешка, которая может взять
+        if (enPassantSquare >= 0 &&
+                (Bitboards.pawnAttacksFrom(enPassantSquare, moveOrder.opposite()) & bitboards[Bitboards.pieceIndex(Kind.PAWN, moveOrder)]) != 0) {
+            result ^= Zobrist.enPassant(enPassantSquare);
+        }
+
+        return result ^ Zobrist.castling(castling);
+    }
+
+    public Color getMoveOrder() {
+        return moveOrder;
+    }
+
+    public boolean isCastlingPossible(Color color, ChessBoard.Castling castling) {
+        return (this.castling & MoveGenerator.castlingFlag(color, castling)) != 0;
+    }
+
+    // индекс поля (x + y * 8), на котором возможно взятие на проходе, или -1
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int getHalfmoveQnt() {
+        return halfmoveQnt;
+    }
+
+    public int getMoveNumber() {
+        return moveNumber;
+    }
+
+    public long getPositionHash() {
+        return hash;
+    }
+
+    // вид фигуры на поле (x, y) или null, если поле пустое
+    public Kind getPieceKind(int x, int y) {
+        int id = getPieceId(x, y);
+
+        return id < 0 ? null : Kind.values()[id % 6];
+    }
+
+    // цвет фигуры на поле (x, y) или null, если поле пустое
+    public Color getPieceColor(int x, int y) {
+        int id = getPieceId(x, y);
+
+        return id < 0 ? null : (id < 6 ? WHITE : BLACK);
+    }
+
+    private int getPieceId(int x, int y) {
+        long b = Bitboards.bit(Bitboards.square(x, y));
+
+        for (int piece = 0; piece < 12; piece++) {
+            if ((bitboards[piece] & b) != 0) {
+                return piece;
+            }
+        }
+
+        return -1;
+    }
+
+    public boolean isInCheck() {
+        long king = bitboards[Bitboards.pieceIndex(Kind.KING, moveOrder)];
+
+        return king != 0 && Bitboards.isSquareAttacked(bitboards, Long.numberOfTrailingZeros(king), moveOrder.opposite());
+    }
+
+    public boolean isCheckmate() {
+        return isInCheck() && !hasAnyLegalMove();
+    }
+
+    public boolean isStalemate() {
+        return !isInCheck() && !hasAnyLegalMove();
+    }
+
+    public boolean hasAnyLegalMove() {
+        return MoveGenerator.hasLegalMove(bitboards, moveOrder, castling, enPassantSquare);
+    }
+
+    // легальные ходы стороны, чья очередь хода (см. PackedMove)
+    public int[] legalMoves() {
+        int[] moves = new int[ChessBoard.MAX_MOVES];
+        long[] scratch = new long[Bitboards.COUNT];
+        int count = MoveGenerator.generate(bitboards, moveOrder, castling, enPassantSquare, moves, 0);
+        int result = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (MoveGenerator.isLegal(bitboards, moveOrder, moves[i], scratch)) {
+                moves[result++] = moves[i];
+            }
+        }
+
+        return Arrays.copyOf(moves, result);
+    }
+
+    // позиция после хода move, полученного от legalMoves(). Ход не проверяется
+    public Position play(int move) {
+        long[] result = bitboards.clone();
+        Color enemy = moveOrder.opposite();
+        Kind kind = PackedMove.getKind(move);
+        int from = PackedMove.getFrom(move), to = PackedMove.getTo(move);
+        long fromTo = Bitboards.bit(from) | Bitboards.bit(to);
+
+        result[Bitboards.pieceIndex(kind, moveOrder)] ^= fromTo;
+        result[Bitboards.colorIndex(moveOrder)] ^= fromTo;
+
+        if (PackedMove.isCapture(move)) {
+            // взятая на проходе пешка стоит на той же горизонтали, откуда пошла берущая пешка
+            long taken = Bitboards.bit(PackedMove.isEnPassant(move) ? Bitboards.square(Bitboards.squareX(to), Bitboards.squareY(from)) : to);
+
+            result[Bitboards.pieceIndex(PackedMove.getTakenKind(move), enemy)] &= ~taken;
+            result[Bitboards.colorIndex(enemy)] &= ~taken;
+        }
+        if (PackedMove.isPromotion(move)) {
+            result[Bitboards.pieceIndex(Kind.PAWN, moveOrder)] &= ~Bitboards.bit(to);
+            result[Bitboards.pieceIndex(PackedMove.getPromotion(move), moveOrder)] |= Bitboards.bit(to);
+        }
+        else if (PackedMove.isCastling(move)) {
+            int rookFrom = to > from ? from + 3 : from - 4, rookTo = to > from ? from + 1 : from - 1;
+            long rook = Bitboards.bit(rookFrom) | Bitboards.bit(rookTo);
+
+            result[Bitboards.pieceIndex(Kind.ROOK, moveOrder)] ^= rook;
+            result[Bitboards.colorIndex(moveOrder)] ^= rook;
+        }
+        result[Bitboards.ALL_PIECES] = result[Bitboards.WHITE_PIECES] | result[Bitboards.BLACK_PIECES];
+
+        return new Position(result, enemy,
+                castling & ~(ChessBoard.castlingLostBy(from) | ChessBoard.castlingLostBy(to)),
+                (move & PackedMove.DOUBLE_PAWN_MOVE) != 0 ? (from + to) >> 1 : -1,
+                PackedMove.isCapture(move) || kind == Kind.PAWN ? 0 : halfmoveQnt + 1,
+                moveOrder == BLACK ? moveNumber + 1 : moveNumber);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Position)) {
+            return false;
+        }
+
+        Position position = (Position) o;
+        return hash == position.hash && moveOrder == position.moveOrder && castling == position.castling &&
+                enPassantSquare == position.enPassantSquare && halfmoveQnt == position.halfmoveQnt &&
+                moveNumber == position.moveNumber && Arrays.equals(bitboards, position.bitboards);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return toFEN();
+    }
+}
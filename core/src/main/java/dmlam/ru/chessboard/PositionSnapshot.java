@@ -0,0 +1,156 @@
+package dmlam.ru.chessboard;
+
+import dmlam.ru.chessboard.Piece.Color;
+
+import static dmlam.ru.chessboard.Piece.Color.BLACK;
+import static dmlam.ru.chessboard.Piece.Color.WHITE;
+
+// компактная неизменяемая копия позиции: 4 бита на поле (32 байта на доску) и один long состояния.
+// Хранится в каждом ходе вместо FEN, ChessBoard восстанавливает позицию из нее без разбора текста
+final class PositionSnapshot {
+    private static final String PIECE_LETTERS = "KQRBNPkqrbnp";  // буквы FEN в порядке Piece.getID()
+
+    // по 4 бита на поле, 16 полей в каждом long: Piece.getID() + 1 или 0 для пустого поля
+    private final long squares0, squares1, squares2, squares3;
+    // биты 0-3 - рокировки, 4-10 - поле взятия на проходе + 1, 11 - очередь хода черных,
+    // 12-31 - счетчик незначащих полуходов, 32-63 - номер хода
+    private final long state;
+
+    PositionSnapshot(long[] bitboards, int castling, int enPassantSquare, Color moveOrder, int halfmoveQnt, int moveNumber) {
+        squares0 = pack(bitboards, 0);
+        squares1 = pack(bitboards, 1);
+        squares2 = pack(bitboards, 2);
+        squares3 = pack(bitboards, 3);
+        state = castling | ((enPassantSquare + 1) << 4) | (moveOrder == BLACK ? 1 << 11 : 0) |
+                ((long) (halfmoveQnt & 0xFFFFF) << 12) | ((long) moveNumber << 32);
+    }
+
+    // упаковывает поля с quarter * 16 по quarter * 16 + 15
+    private static long pack(long[] bitboards, int quarter) {
+        long result = 0;
+
+        for (int piece = 0; piece < 12; piece++) {
+            for (long b = (bitboards[piece] >>> (quarter * 16)) & 0xFFFF; b != 0; b &= b - 1) {
+                result |= (long) (piece + 1) << (Long.numberOfTrailingZeros(b) * 4);
+            }
+        }
+
+        return result;
+    }
+
+    long getSquares(int quarter) {
+        switch (quarter) {
+            case 0:
+                return squares0;
+            case 1:
+                return squares1;
+            case 2:
+                return squares2;
+            default:
+                return squares3;
+        }
+    }
+
+    // Piece.getID() фигуры на поле square или -1, если поле пустое
+    int getPieceId(int square) {
+        return (int) ((getSquares(square >>> 4) >>> ((square & 15) * 4)) & 0xF) - 1;
+    }
+
+    // битборды позиции в формате ChessBoard (см. Bitboards)
+    long[] toBitboards() {
+        long[] result = new long[Bitboards.COUNT];
+
+        for (int square = 0; square < 64; square++) {
+            int piece = getPieceId(square);
+
+            if (piece >= 0) {
+                result[piece] |= Bitboards.bit(square);
+                result[piece < 6 ? Bitboards.WHITE_PIECES : Bitboards.BLACK_PIECES] |= Bitboards.bit(square);
+            }
+        }
+        result[Bitboards.ALL_PIECES] = result[Bitboards.WHITE_PIECES] | result[Bitboards.BLACK_PIECES];
+
+        return result;
+    }
+
+    int getCastling() {
+        return (int) (state & 0xF);
+    }
+
+    int getEnPassantSquare() {
+        return (int) ((state >>> 4) & 0x7F) - 1;
+    }
+
+    Color getMoveOrder() {
+        return (state & (1 << 11)) != 0 ? BLACK : WHITE;
+    }
+
+    int getHalfmoveQnt() {
+        return (int) ((state >>> 12) & 0xFFFFF);
+    }
+
+    int getMoveNumber() {
+        return (int) (state >>> 32);
+    }
+
+    String toFEN() {
+        StringBuilder builder = new StringBuilder(90);
+
+        // расположение фигур
+        for (int y = 7; y >= 0; y--) {
+            int emptySquares = 0;
+            for (int x = 0; x <= 7; x++) {
+                int piece = getPieceId(Bitboards.square(x, y));
+
+                if (piece < 0) {
+                    emptySquares++;
+                } else {
+                    if (emptySquares != 0) {
+                        builder.append(emptySquares);
+                        emptySquares = 0;
+                    }
+                    builder.append(PIECE_LETTERS.charAt(piece));
+                }
+            }
+            if (emptySquares != 0) {
+                builder.append(emptySquares);
+            }
+
+            if (y != 0) {
+                builder.append('/');
+            }
+        }
+
+        // активная сторона
+        builder.append(' ');
+        builder.append(getMoveOrder().getFENColorLetter());
+
+        // возможность рокировки
+        int castling = getCastling();
+        builder.append(' ');
+        if ((castling & MoveGenerator.WHITE_KING_CASTLING) != 0) { builder.append('K'); }
+        if ((castling & MoveGenerator.WHITE_QUEEN_CASTLING) != 0) { builder.append('Q'); }
+        if ((castling & MoveGenerator.BLACK_KING_CASTLING) != 0) { builder.append('k'); }
+        if ((castling & MoveGenerator.BLACK_QUEEN_CASTLING) != 0) { builder.append('q'); }
+        if (castling == 0) { builder.append('-'); }
+
+        // возможность взятия пешки на проходе
+        int enPassantSquare = getEnPassantSquare();
+        builder.append(' ');
+        if (enPassantSquare >= 0) {
+            builder.append(ChessBoard.squareName(Bitboards.squareX(enPassantSquare), Bitboards.squareY(enPassantSquare)));
+        } else {
+            builder.append('-');
+        }
+
+        // счетчик полуходов
+        builder.append(' ');
+        builder.append(getHalfmoveQnt());
+
+        // номер хода
+        builder.append(' ');
+        builder.append(getMoveNumber());
+
+        return builder.toString();
+    }
+}
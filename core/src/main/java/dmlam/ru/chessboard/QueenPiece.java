@@ -0,0 +1,32 @@
+package dmlam.ru.chessboard;
+
+/**
+ * Created by Lam on 13.06.2015.
+ */
+public class QueenPiece extends Piece {
+
+    public QueenPiece(ChessBoard chessBoard, Piece.Color color, int x, int y) {
+        super(chessBoard, Piece.Kind.QUEEN, color, x, y);
+    }
+
+    @Override
+    public char getPieceLetter() {
+        return 'Q';
+    }
+
+    @Override
+    public boolean isSquareThreaten(int x, int y) {
+        int square = Bitboards.square(this.x, this.y);
+        long occupied = chessBoard.getOccupied();
+
+        return isInAttacks(Bitboards.rookAttacks(square, occupied) | Bitboards.bishopAttacks(square, occupied), x, y);
+    }
+
+    @Override
+    protected int generateAvailableMoves() {
+        super.generateAvailableMoves();
+
+        return generateLineMoves(1, 0) + generateLineMoves(0, 1) + generateLineMoves(1, 1) + generateLineMoves(1, -1);
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package dmlam.ru.chessboard;
+
+// кольцевой буфер последних сделанных ходов для отчетов о падении.
+// Ходы хранятся упакованными (PackedMove), в строку буфер превращается лишь при формировании отчета (toString).
+// Ссылки на Move не хранятся, чтобы буфер не удерживал дерево ходов и не обращался к доске при формировании отчета
+final class RecentMoves {
+    private final int[] moves;
+    private int next = 0;    // куда будет записан следующий ход
+    private int count = 0;
+
+    RecentMoves(int capacity) {
+        moves = new int[capacity];
+    }
+
+    // пишет в буфер только поток, в котором ходят на доске. Отчет может читать его из другого потока без блокировок:
+    // в худшем случае в нем не окажется самого последнего хода
+    void add(Move move) {
+        moves[next] = pack(move);
+        next = (next + 1) % moves.length;
+        if (count < moves.length) {
+            count++;
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    private static int pack(Move move) {
+        if (move.isNullMove()) {
+            return PackedMove.NO_MOVE;
+        }
+
+        Point from = move.getPiece1From(), to = move.getPiece1To();
+        int result = PackedMove.encode(Bitboards.square(from.x, from.y), Bitboards.square(to.x, to.y), move.getPiece1Kind());
+
+        if (move.getPromotePawnTo() != null) {
+            result = PackedMove.setPromotion(result, Piece.Kind.valueOf(move.getPromotePawnTo().name()));
+        }
+
+        return result;
+    }
+
+    // ходы от самого старого к последнему через пробел, в записи вроде "e2e4"
+    @Override
+    public String toString() {
+        int n = count, last = next;
+        StringBuilder sb = new StringBuilder(n * 6);
+
+        for (int i = n; i > 0; i--) {
+            int move = moves[(last - i + moves.length) % moves.length];
+
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(move == PackedMove.NO_MOVE ? "--" : PackedMove.toString(move));
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package dmlam.ru.chessboard;
+
+/**
+ * Created by Lam on 13.06.2015.
+ */
+public class RookPiece extends Piece {
+
+    public RookPiece(ChessBoard chessBoard, Color color, int x, int y) {
+        super(chessBoard, Kind.ROOK, color, x, y);
+    }
+
+    @Override
+    public char getPieceLetter() {
+        return 'R';
+    }
+
+    @Override
+    public boolean isSquareThreaten (int x, int y) {
+        return isInAttacks(Bitboards.rookAttacks(Bitboards.square(this.x, this.y), chessBoard.getOccupied()), x, y);
+    }
+
+    @Override
+    protected int generateAvailableMoves () {
+        super.generateAvailableMoves();
+
+        return generateLineMoves(1, 0) + generateLineMoves(0, 1);
+    }
+
+}
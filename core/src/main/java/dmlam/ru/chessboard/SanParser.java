@@ -0,0 +1,109 @@
+package dmlam.ru.chessboard;
+
+import dmlam.ru.chessboard.Piece.Kind;
+
+// разбор хода в краткой нотации (e4, exd5, Nbd7, R1e2, e8=Q, O-O ...) без создания промежуточных строк.
+// Объект переиспользуется: parse заполняет поля, которые действительны до следующего вызова
+final class SanParser {
+    static final int NO_CASTLING = 0, SHORT_CASTLING = 1, LONG_CASTLING = 2;
+
+    int castling;
+    Kind kind;
+    int fromX, fromY;        // -1 если вертикаль (горизонталь) откуда идет фигура не указана
+    int toX, toY;
+    char promotion;          // фигура превращения (Q, R, B, N) или ' '
+
+    boolean parse(CharSequence move) {
+        int length = move.length();
+
+        if (length >= 4 && move.charAt(length - 4) == 'e' && move.charAt(length - 3) == '.' &&
+                move.charAt(length - 2) == 'p' && move.charAt(length - 1) == '.') {
+            length -= 4;
+        }
+        while (length > 0 && " +#!?".indexOf(move.charAt(length - 1)) >= 0) {
+            length--;
+        }
+        if (length == 0) {
+            return false;
+        }
+
+        char first = move.charAt(0);
+
+        castling = NO_CASTLING;
+        kind = Kind.PAWN;
+        fromX = -1;
+        fromY = -1;
+        promotion = ' ';
+
+        if (first == 'O' || first == 'o' || first == '0') {
+            // рокировка: O-O, O-O-O (также o-o и 0-0)
+            if (length == 3) {
+                castling = SHORT_CASTLING;
+            } else if (length == 5) {
+                castling = LONG_CASTLING;
+            } else {
+                return false;
+            }
+            return move.charAt(1) == '-' && (length == 3 || move.charAt(3) == '-');
+        }
+
+        int start = 0;
+
+        if ("KQRBN".indexOf(first) >= 0) {
+            kind = Kind.kindByLetter(first);
+            start = 1;
+        } else if ("QRBN".indexOf(move.charAt(length - 1)) >= 0) {
+            // превращение пешки: e8Q, e8=Q, e8/Q
+            promotion = move.charAt(--length);
+            if (length > 0 && "=/".indexOf(move.charAt(length - 1)) >= 0) {
+                length--;
+            }
+        }
+
+        if (length - start < 2) {
+            return false;
+        }
+
+        toX = move.charAt(length - 2) - 'a';
+        toY = move.charAt(length - 1) - '1';
+        if (toX < 0 || toX > 7 || toY < 0 || toY > 7) {
+            return false;
+        }
+
+        for (int i = start; i < length - 2; i++) {
+            char c = move.charAt(i);
+
+            if (c >= 'a' && c <= 'h') {
+                fromX = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromY = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // подходит ли ход, полученный от MoveGenerator, под разобранную запись
+    boolean matches(int move) {
+        if (castling != NO_CASTLING) {
+            return PackedMove.isCastling(move) &&
+                    (PackedMove.getTo(move) > PackedMove.getFrom(move)) == (castling == SHORT_CASTLING);
+        }
+
+        int from = PackedMove.getFrom(move), to = PackedMove.getTo(move);
+
+        if (PackedMove.getKind(move) != kind || to != Bitboards.square(toX, toY) ||
+                (fromX >= 0 && Bitboards.squareX(from) != fromX) || (fromY >= 0 && Bitboards.squareY(from) != fromY)) {
+            return false;
+        }
+        if (PackedMove.isPromotion(move)) {
+            // если фигура превращения не указана, то из четырех превращений берем одно
+            Kind promoteTo = PackedMove.getPromotion(move);
+            return promotion == ' ' ? promoteTo == Kind.QUEEN : promoteTo == Kind.kindByLetter(promotion);
+        }
+
+        return promotion == ' ';
+    }
+}
@@ -0,0 +1,60 @@
+package dmlam.ru.chessboard;
+
+// случайные ключи для хеширования позиций по Зобристу.
+// Ключи строятся от постоянного начального значения, так что хеши одинаковы от запуска к запуску и их можно сохранять
+final class Zobrist {
+    private static final long[][] PIECES = new long[12][64];  // [Piece.getID()][square]
+    private static final long[] CASTLING = new long[16];      // [флаги рокировок]
+    private static final long[] EN_PASSANT = new long[8];     // [вертикаль поля взятия на проходе]
+    static final long BLACK_TO_MOVE;
+
+    private static long seed = 0x2545F4914F6CDD1DL;
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECES[piece][square] = nextKey();
+            }
+        }
+
+        long[] castlingKeys = {nextKey(), nextKey(), nextKey(), nextKey()};
+        for (int rights = 0; rights < 16; rights++) {
+            for (int i = 0; i < 4; i++) {
+                if ((rights & (1 << i)) != 0) {
+                    CASTLING[rights] ^= castlingKeys[i];
+                }
+            }
+        }
+
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT[file] = nextKey();
+        }
+
+        BLACK_TO_MOVE = nextKey();
+    }
+
+    private Zobrist() {
+    }
+
+    // splitmix64
+    private static long nextKey() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+
+    static long piece(int pieceId, int square) {
+        return PIECES[pieceId][square];
+    }
+
+    static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    static long enPassant(int square) {
+        return EN_PASSANT[Bitboards.squareX(square)];
+    }
+}
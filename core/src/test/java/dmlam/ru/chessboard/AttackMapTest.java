@@ -0,0 +1,70 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import dmlam.ru.chessboard.Piece.Color;
+
+import static dmlam.ru.chessboard.TestBoards.KIWIPETE;
+import static dmlam.ru.chessboard.TestBoards.board;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AttackMapTest {
+    // кэшированная карта атак обоих цветов совпадает с построенной заново и с проверкой каждого поля по отдельности
+    private static void checkAttackMaps(ChessBoard board) {
+        long[] bitboards = board.getBitboards();
+
+        for (Color color : new Color[] {Color.WHITE, Color.BLACK}) {
+            long map = board.getAttackMap(color);
+
+            assertEquals(board.saveToFEN(), Bitboards.attackMap(bitboards, color), map);
+            for (int square = 0; square < 64; square++) {
+                assertEquals(board.saveToFEN() + " " + square, Bitboards.isSquareAttacked(bitboards, square, color),
+                        board.isSquareThreaten(Bitboards.squareX(square), Bitboards.squareY(square), color));
+            }
+        }
+    }
+
+    @Test
+    public void attackMapsFollowMakeAndUnmake() {
+        ChessBoard board = board(KIWIPETE);
+        int[] moves = new int[ChessBoard.MAX_MOVES];
+        int count = board.generateLegalMoves(moves);
+
+        checkAttackMaps(board);
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            checkAttackMaps(board);
+            board.unmakeMove();
+            checkAttackMaps(board);
+        }
+    }
+
+    @Test
+    public void attackMapsFollowGameMoves() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        for (String move : new String[] {"e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Bxc6", "dxc6", "o-o", "f6"}) {
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+            checkAttackMaps(board);
+        }
+
+        board.rollback();
+        checkAttackMaps(board);
+        board.rollback();
+        checkAttackMaps(board);
+    }
+
+    @Test
+    public void checkUsesAttackMap() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        for (String move : new String[] {"e4", "f5", "Qh5+"}) {
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+        }
+        board.getAttackMap(Color.WHITE);
+
+        assertTrue(board.isInCheck(Color.BLACK));
+        assertTrue(board.isCurrentPlayerChecked());
+    }
+}
@@ -0,0 +1,65 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import static dmlam.ru.chessboard.TestBoards.KIWIPETE;
+import static dmlam.ru.chessboard.TestBoards.board;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CopyTest {
+    private static void play(ChessBoard board, String... moves) {
+        for (String move : moves) {
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+        }
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        play(board, "e4", "e5", "Nf3");
+        String FEN = board.saveToFEN();
+        long hash = board.getPositionHash();
+        ChessBoard copy = board.copy();
+
+        assertEquals(FEN, copy.saveToFEN());
+        assertEquals(hash, copy.getPositionHash());
+        assertEquals(board.perft(3), copy.perft(3));
+
+        play(copy, "Nc6", "Bb5", "a6");
+        assertEquals(FEN, board.saveToFEN());
+        assertEquals(hash, board.getPositionHash());
+    }
+
+    @Test
+    public void copyRollsBackToItsInitialPosition() {
+        ChessBoard board = board(KIWIPETE);
+
+        play(board, "O-O", "O-O");
+        String FEN = board.saveToFEN();
+        ChessBoard copy = board.copy();
+
+        play(copy, "Nxf7", "Rxf7", "Qxf6");
+        copy.rollback();
+        copy.rollback();
+        copy.rollback();
+
+        assertEquals(FEN, copy.saveToFEN());
+        assertEquals(board.getPositionHash(), copy.getPositionHash());
+    }
+
+    @Test
+    public void loadedPositionRollsBackToItself() {
+        Position position = Position.fromFEN(KIWIPETE);
+        ChessBoard board = new ChessBoard();
+
+        board.loadPosition(position);
+        play(board, "Bxa6", "Nxe4");
+        board.rollback();
+        board.rollback();
+
+        assertEquals(KIWIPETE, board.saveToFEN());
+        assertEquals(position.getPositionHash(), board.getPositionHash());
+    }
+}
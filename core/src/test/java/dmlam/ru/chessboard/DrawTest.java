@@ -0,0 +1,76 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import static dmlam.ru.chessboard.TestBoards.board;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DrawTest {
+    // признаки ничьей после каждого хода: D - ничья, C - можно потребовать ничью, . - ни того, ни другого
+    private static String play(String FEN, ChessBoard.MoveMode mode, String... moves) {
+        ChessBoard board = board(FEN, mode);
+        StringBuilder result = new StringBuilder();
+
+        for (String move : moves) {
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+
+            Move lastMove = board.getLastMove();
+            String notation = lastMove.getNotation();
+
+            result.append(lastMove.isGameDrawn() ? 'D' : lastMove.isDrawClaimable() ? 'C' : '.');
+            assertEquals(move, lastMove.isGameDrawn() || lastMove.isOpponentStalemated(), notation.endsWith(" 1/2-1/2"));
+        }
+
+        return result.toString();
+    }
+
+    private static void checkBothModes(String expected, String FEN, String... moves) {
+        assertEquals(expected, play(FEN, ChessBoard.MoveMode.FULL, moves));
+        assertEquals(expected, play(FEN, ChessBoard.MoveMode.TRUSTED, moves));
+    }
+
+    @Test
+    public void threefoldRepetitionIsClaimable() {
+        checkBothModes(".......C.", ChessBoard.STARTING_POSITION_FEN,
+                "Nf3", "Nf6", "Ng1", "Ng8", "Nf3", "Nf6", "Ng1", "Ng8", "e4");
+    }
+
+    @Test
+    public void repetitionAfterPawnMoveStartsAgain() {
+        checkBothModes("...........", ChessBoard.STARTING_POSITION_FEN,
+                "Nf3", "Nf6", "Ng1", "Ng8", "e4", "e5", "Nf3", "Nf6", "Ng1", "Ng8", "Nf3");
+    }
+
+    @Test
+    public void fiftyMoveRuleIsClaimable() {
+        checkBothModes(".CC", "4k3/8/8/8/8/8/4R3/4K3 w - - 98 60", "Ra2", "Kd8", "Ra3");
+    }
+
+    @Test
+    public void mateOutweighsFiftyMoveRule() {
+        ChessBoard board = board("7k/8/6K1/8/8/8/8/R7 w - - 99 80", ChessBoard.MoveMode.FULL);
+
+        assertTrue(board.shortMove(board.getMoveOrder(), "Ra8#"));
+        assertTrue(board.getLastMove().isOpponentCheckmated());
+        assertFalse(board.getLastMove().isDrawClaimable());
+        assertFalse(board.getLastMove().isGameDrawn());
+    }
+
+    @Test
+    public void insufficientMaterialIsDraw() {
+        // король и слон против короля
+        checkBothModes(".D", "4k3/1b6/8/8/8/8/8/4K1R1 w - - 0 1", "Rg2", "Bxg2");
+        // слоны на полях одного цвета
+        checkBothModes("D", "4k3/8/8/8/8/2b5/8/R1B1K3 b - - 0 1", "Bxa1");
+    }
+
+    @Test
+    public void enoughMaterial() {
+        // ладья, слоны на полях разного цвета, конь со слоном - мат возможен
+        checkBothModes("..", "4k3/8/8/8/8/8/r7/4K1B1 b - - 0 1", "Ra1+", "Kd2");
+        checkBothModes(".", "4k3/8/8/8/8/3b4/8/2B1K3 b - - 0 1", "Bb1");
+        checkBothModes(".", "4k3/8/8/8/8/2n5/8/2B1K3 b - - 0 1", "Nb5");
+    }
+}
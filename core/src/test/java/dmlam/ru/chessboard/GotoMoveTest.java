@@ -0,0 +1,59 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dmlam.ru.chessboard.TestBoards.board;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GotoMoveTest {
+    // ладьи уходят с начальных полей и возвращаются, король ходит - рокировки теряются по одной
+    private static final String[] MOVES = {"a4", "h5", "Ra3", "Rh6", "Ra1", "Rh8", "e4", "e5", "Ke2", "Nc6", "Ke1", "Nb8"};
+
+    private static void checkNavigation(ChessBoard.MoveMode mode) {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN, mode);
+        List<Move> moves = new ArrayList<>();
+        List<String> FENs = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+
+        for (String move : MOVES) {
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+            moves.add(board.getLastMove());
+            FENs.add(board.saveToFEN());
+            hashes.add(board.getPositionHash());
+
+            // позиция после хода совпадает с той же позицией, загруженной из FEN
+            assertEquals(move, board(board.saveToFEN()).getPositionHash(), board.getPositionHash());
+        }
+
+        assertTrue(FENs.get(2), FENs.get(2).contains(" b Kkq "));
+        assertTrue(FENs.get(3), FENs.get(3).contains(" w Kq "));
+        assertTrue(FENs.get(11), FENs.get(11).contains(" w q "));
+
+        // туда и обратно по партии: после каждого перехода доска такая же, как сразу после хода
+        for (int i = moves.size() - 1; i >= 0; i--) {
+            board.gotoMove(moves.get(i));
+            assertEquals(MOVES[i], FENs.get(i), board.saveToFEN());
+            assertEquals(MOVES[i], hashes.get(i).longValue(), board.getPositionHash());
+        }
+        for (int i = 0; i < moves.size(); i += 3) {
+            board.gotoMove(moves.get(moves.size() - 1));
+            board.gotoMove(moves.get(i));
+            assertEquals(MOVES[i], FENs.get(i), board.saveToFEN());
+            assertEquals(MOVES[i], hashes.get(i).longValue(), board.getPositionHash());
+        }
+    }
+
+    @Test
+    public void gotoMoveRestoresCastlingRights() {
+        checkNavigation(ChessBoard.MoveMode.FULL);
+    }
+
+    @Test
+    public void gotoMoveRestoresCastlingRightsInTrustedMode() {
+        checkNavigation(ChessBoard.MoveMode.TRUSTED);
+    }
+}
@@ -0,0 +1,156 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static dmlam.ru.chessboard.TestBoards.EN_PASSANT;
+import static dmlam.ru.chessboard.TestBoards.KIWIPETE;
+import static dmlam.ru.chessboard.TestBoards.PROMOTION;
+import static dmlam.ru.chessboard.TestBoards.board;
+import static dmlam.ru.chessboard.TestBoards.findMove;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MakeMoveTest {
+    private static int legalMoveCount(String FEN) {
+        return board(FEN).generateLegalMoves(new int[ChessBoard.MAX_MOVES]);
+    }
+
+    @Test
+    public void legalMoveCounts() {
+        assertEquals(20, legalMoveCount(ChessBoard.STARTING_POSITION_FEN));
+        assertEquals(48, legalMoveCount(KIWIPETE));
+        assertEquals(24, legalMoveCount(PROMOTION));
+        assertEquals(31, legalMoveCount(EN_PASSANT));
+    }
+
+    @Test
+    public void perftStartingPosition() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        assertEquals(20, board.perft(1));
+        assertEquals(400, board.perft(2));
+        assertEquals(8902, board.perft(3));
+    }
+
+    @Test
+    public void perftKiwipete() {
+        ChessBoard board = board(KIWIPETE);
+
+        assertEquals(48, board.perft(1));
+        assertEquals(2039, board.perft(2));
+        assertEquals(97862, board.perft(3));
+        assertEquals(KIWIPETE, board.saveToFEN());
+    }
+
+    @Test
+    public void divideSumsToPerft() {
+        ChessBoard board = board(KIWIPETE);
+        Map<String, Long> divide = board.divide(2);
+        long total = 0;
+
+        for (long count : divide.values()) {
+            total += count;
+        }
+
+        assertEquals(48, divide.size());
+        assertEquals(2039, total);
+        assertEquals(Long.valueOf(43), divide.get("e1g1"));
+    }
+
+    @Test
+    public void unmakeMoveRestoresPosition() {
+        for (String FEN : new String[] {ChessBoard.STARTING_POSITION_FEN, KIWIPETE, EN_PASSANT, PROMOTION}) {
+            ChessBoard board = board(FEN);
+            int[] moves = new int[ChessBoard.MAX_MOVES];
+            int count = board.generateMoves(moves);
+            long hash = board.getPositionHash();
+
+            for (int i = 0; i < count; i++) {
+                board.makeMove(moves[i]);
+                board.unmakeMove();
+
+                assertEquals(PackedMove.toString(moves[i]), FEN, board.saveToFEN());
+                assertEquals(PackedMove.toString(moves[i]), hash, board.getPositionHash());
+            }
+        }
+    }
+
+    // позиция после хода move (в записи вроде "e2e4") начинается с FEN-строки expected
+    private static void checkMove(String FEN, String move, String expected) {
+        ChessBoard board = board(FEN);
+
+        board.makeMove(findMove(board, move));
+        assertTrue(board.saveToFEN(), board.saveToFEN().startsWith(expected));
+        board.unmakeMove();
+        assertEquals(FEN, board.saveToFEN());
+    }
+
+    @Test
+    public void specialMoves() {
+        checkMove(KIWIPETE, "e1g1", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R4RK1 b kq - 1 1");
+        checkMove(KIWIPETE, "e1c1", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/2KR3R b kq - 1 1");
+        checkMove(KIWIPETE, "a1b1", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/1R2K2R b Kkq - 1 1");
+        checkMove(EN_PASSANT, "e5f6", "rnbqkbnr/ppp1p1pp/5P2/3p4/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 3");
+        checkMove(PROMOTION, "g2h1q", "n1n5/PPPk4/8/8/8/8/4Kp1p/5N1q w - - 0 2");
+        checkMove(PROMOTION, "g2f1n", "n1n5/PPPk4/8/8/8/8/4Kp1p/5n1N w - - 0 2");
+        checkMove("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", "b7b8r", "1R2k3/8/8/8/8/8/8/4K3 b - - 0 1");
+    }
+
+    @Test
+    public void hashIsUpdatedIncrementally() {
+        for (String FEN : new String[] {ChessBoard.STARTING_POSITION_FEN, KIWIPETE, EN_PASSANT, PROMOTION}) {
+            checkHash(board(FEN), 3);
+        }
+    }
+
+    // хеш после каждого makeMove и unmakeMove совпадает с вычисленным заново
+    private static void checkHash(ChessBoard board, int depth) {
+        int[] moves = new int[ChessBoard.MAX_MOVES];
+        int count = board.generateLegalMoves(moves);
+
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            assertEquals(board.saveToFEN(), board.calculatePositionHash(), board.getPositionHash());
+            if (depth > 1) {
+                checkHash(board, depth - 1);
+            }
+            board.unmakeMove();
+            assertEquals(board.saveToFEN(), board.calculatePositionHash(), board.getPositionHash());
+        }
+    }
+
+    @Test
+    public void sameHashForTranspositions() {
+        ChessBoard board1 = board(ChessBoard.STARTING_POSITION_FEN);
+        ChessBoard board2 = board(ChessBoard.STARTING_POSITION_FEN);
+
+        for (String move : new String[] {"g1f3", "g8f6", "b1c3", "b8c6"}) {
+            board1.makeMove(findMove(board1, move));
+        }
+        for (String move : new String[] {"b1c3", "b8c6", "g1f3", "g8f6"}) {
+            board2.makeMove(findMove(board2, move));
+        }
+
+        assertEquals(board1.getPositionHash(), board2.getPositionHash());
+    }
+
+    @Test
+    public void enPassantCountsOnlyWithCapturingPawn() {
+        // после d7-d5 взять на проходе нечем - позиция та же, что и без поля взятия на проходе
+        ChessBoard withSquare = board("4k3/3p4/8/8/8/8/8/4K3 b - - 0 1");
+        ChessBoard withoutSquare = board("4k3/8/8/3p4/8/8/8/4K3 w - - 0 2");
+
+        withSquare.makeMove(findMove(withSquare, "d7d5"));
+        assertEquals(withoutSquare.getPositionHash(), withSquare.getPositionHash());
+
+        // а здесь пешка e5 может взять на проходе, и хеш другой
+        ChessBoard capturing = board("4k3/3p4/8/4P3/8/8/8/4K3 b - - 0 1");
+        ChessBoard notCapturing = board("4k3/8/8/3pP3/8/8/8/4K3 w - - 0 2");
+
+        capturing.makeMove(findMove(capturing, "d7d5"));
+        assertNotEquals(notCapturing.getPositionHash(), capturing.getPositionHash());
+    }
+}
@@ -0,0 +1,100 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static dmlam.ru.chessboard.TestBoards.board;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MoveIndexTest {
+    private static final String GAME = "[Event \"y\"]\n\n1. d4 d5 (1... Nf6 2. c4 (2. Nf3 g6) e6) (1... f5 {dutch}) 2. c4 dxc4 3. e3 b5 4. a4 c6 1/2-1/2\n";
+
+    // все ходы дерева вариантов
+    private static void collect(MoveList moves, List<Move> result) {
+        for (Move move : moves) {
+            result.add(move);
+            collect(move.getVariants(), result);
+        }
+    }
+
+    @Test
+    public void findsMovesAfterShiftIds() throws PGNError {
+        Game game = new PGNLoader().getGame(GAME);
+        List<Move> moves = new ArrayList<>();
+        List<Integer> oldIds = new ArrayList<>();
+
+        collect(game.getMoves(), moves);
+        assertEquals(14, moves.size());
+        for (Move move : moves) {
+            assertSame(move, game.findMove(move.getMoveId()));
+            oldIds.add(move.getMoveId());
+        }
+
+        // индекс уже построен, ходы в нем лежат под старыми id
+        game.getMoves().shiftIds(100000);
+
+        for (int i = 0; i < moves.size(); i++) {
+            assertEquals(oldIds.get(i) + 100000, moves.get(i).getMoveId());
+            assertSame(moves.get(i), game.findMove(moves.get(i).getMoveId()));
+            assertNull(game.findMove(oldIds.get(i)));
+        }
+    }
+
+    @Test
+    public void boardKeepsIndexInSync() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        assertTrue(board.shortMove(Piece.Color.WHITE, "e4"));
+        int e4 = board.getLastMove().getMoveId();
+        assertTrue(board.shortMove(Piece.Color.BLACK, "e5"));
+        int e5 = board.getLastMove().getMoveId();
+
+        board.rollback();
+        assertTrue(board.shortMove(Piece.Color.BLACK, "c5", true));
+        Move c5 = board.getLastMove();
+
+        assertSame(board.getLastMove().getPrevMove(), board.findMove(e4));
+        assertSame(c5, board.findMove(c5.getMoveId()));
+        assertEquals("e5", board.findMove(e5).getNotation());
+
+        board.gotoMove(e5);
+        board.removeMove(c5);
+        assertNull(board.findMove(c5.getMoveId()));
+        assertNull(board.findMove(12345678));
+        assertEquals("e5", board.findMove(e5).getNotation());
+    }
+
+    @Test
+    public void putGetRemove() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+        MoveIndex index = new MoveIndex();
+        List<Move> moves = new ArrayList<>();
+
+        // достаточно ходов, чтобы таблица несколько раз увеличилась
+        for (int i = 0; i < 10000; i++) {
+            Move move = new Move(board.getPiece(3, 1));
+
+            moves.add(move);
+            index.put(move);
+        }
+        for (int i = 0; i < moves.size(); i += 2) {
+            index.remove(moves.get(i).getMoveId());
+        }
+
+        assertEquals(5000, index.size());
+        for (int i = 0; i < moves.size(); i++) {
+            Move move = moves.get(i);
+
+            if (i % 2 == 0) {
+                assertNull(index.get(move.getMoveId()));
+            } else {
+                assertSame(move, index.get(move.getMoveId()));
+            }
+        }
+    }
+}
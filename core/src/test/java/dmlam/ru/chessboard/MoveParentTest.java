@@ -0,0 +1,95 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import static dmlam.ru.chessboard.TestBoards.board;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MoveParentTest {
+    // у каждого хода дерева родитель - ход, в варианты которого он входит
+    private static int checkParents(MoveList moves, Move parent) {
+        int count = 0;
+
+        for (Move move : moves) {
+            assertSame(move.toString(), parent, move.getPrevMove());
+            count += 1 + checkParents(move.getVariants(), move);
+        }
+
+        return count;
+    }
+
+    private static void play(ChessBoard board, String move, boolean newVariant) {
+        assertTrue(move, board.shortMove(board.getMoveOrder(), move, newVariant));
+    }
+
+    @Test
+    public void loadedGameHasParents() throws PGNError {
+        Game game = new PGNLoader().getGame("[Event \"y\"]\n\n1. d4 d5 (1... Nf6 2. c4 (2. Nf3 g6) e6) (1... f5) 2. c4 *\n");
+
+        assertEquals(9, checkParents(game.getMoves(), null));
+    }
+
+    @Test
+    public void rollbackFromVariationGoesToParent() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        play(board, "e4", false);
+        Move e4 = board.getLastMove();
+        play(board, "e5", false);
+        board.rollback();
+        play(board, "c5", true);
+        Move c5 = board.getLastMove();
+        play(board, "Nf3", false);
+
+        assertSame(c5, board.getLastMove().getPrevMove());
+        assertSame(e4, c5.getPrevMove());
+
+        // c5 - второй вариант после e4, откат идет в него, а не в основной вариант
+        board.rollback();
+        assertSame(c5, board.getLastMove());
+        board.rollback();
+        assertSame(e4, board.getLastMove());
+        assertTrue(board.saveToFEN(), board.saveToFEN().startsWith("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b"));
+    }
+
+    @Test
+    public void reorderingVariantsKeepsParents() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        play(board, "e4", false);
+        Move e4 = board.getLastMove();
+        play(board, "e5", false);
+        Move e5 = board.getLastMove();
+        board.rollback();
+        play(board, "c5", true);
+        Move c5 = board.getLastMove();
+
+        board.moveVariantUp(c5);
+        assertSame(c5, e4.getVariants(0));
+        assertSame(e5, e4.getVariants(1));
+        board.moveVariantDown(c5);
+        assertSame(e5, e4.getVariants(0));
+        assertSame(e4, c5.getPrevMove());
+        assertSame(e4, e5.getPrevMove());
+    }
+
+    @Test
+    public void removingCurrentMoveMakesParentCurrent() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        play(board, "e4", false);
+        Move e4 = board.getLastMove();
+        play(board, "e5", false);
+        board.rollback();
+        play(board, "c5", true);
+        Move c5 = board.getLastMove();
+
+        board.removeMove(c5);
+        assertSame(e4, board.getLastMove());
+        assertNull(c5.getPrevMove());
+        assertEquals(1, e4.getVariantCount());
+    }
+}
@@ -0,0 +1,262 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PGNIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String game(String event, String moves) {
+        return "[Event \"" + event + "\"]\n\n" + moves + "\n\n";
+    }
+
+    private static void write(File file, String text, boolean append) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, append);
+
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static File indexOf(File file) {
+        return new File(file.getParent(), file.getName().replace(".pgn", ".gamesIndex"));
+    }
+
+    private static String event(PGNLoader loader, File file, int index) throws PGNError {
+        return loader.getGame(file.getPath(), index).tagByName("Event");
+    }
+
+    // смещения партий, найденные последовательным чтением всего файла
+    private static long[] readOffsets(File file) throws IOException, PGNError {
+        long[] result = new long[0];
+        FileInputStream in = new FileInputStream(file);
+
+        try {
+            PGNReader reader = new PGNReader(in);
+            IPGNListener skip = new IPGNListener() {
+                @Override public void onTag(String name, String value) {}
+                @Override public void onMoveNumber(int moveNumber, Piece.Color moveOrder) {}
+                @Override public void onMove(String move) {}
+                @Override public void onNumericAnnotationGlyph(int glyph) {}
+                @Override public void onAnnotation(String annotation) {}
+                @Override public void onComment(String comment) {}
+                @Override public void onVariationStart() {}
+                @Override public void onVariationEnd() {}
+                @Override public void onGameEnd(Game.GameResult result) {}
+            };
+
+            while (reader.readGame(skip)) {
+                long[] next = new long[result.length + 1];
+
+                System.arraycopy(result, 0, next, 0, result.length);
+                next[result.length] = reader.getGameOffset();
+                result = next;
+            }
+        } finally {
+            in.close();
+        }
+
+        return result;
+    }
+
+    private static long[] concat(long[] first, long[] second) {
+        long[] result = new long[first.length + second.length];
+
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    @Test
+    public void buildsAndReopensIndex() throws Exception {
+        File file = folder.newFile("games.pgn");
+        StringBuilder pgn = new StringBuilder();
+
+        for (int i = 0; i < 20; i++) {
+            pgn.append(game("G" + i, "1. e4 e5 2. Nf3 (2. f4 exf4) Nc6 {comment} 3. Bb5 *"));
+        }
+        write(file, pgn.toString(), false);
+
+        PGNLoader loader = new PGNLoader();
+        assertEquals("G7", event(loader, file, 7));
+        assertEquals(20, loader.getGamesCount());
+        for (int i = 19; i >= 0; i--) {
+            assertEquals("G" + i, event(loader, file, i));
+        }
+
+        // заголовок индекса: сигнатура "PGNI", версия 2, размер PGN файла
+        File index = indexOf(file);
+        DataInputStream in = new DataInputStream(new FileInputStream(index));
+        try {
+            assertEquals(0x50474E49, in.readInt());
+            assertEquals(2, in.readInt());
+            assertEquals(file.length(), in.readLong());
+        } finally {
+            in.close();
+        }
+        assertEquals(36 + 20 * 8, index.length());
+
+        // второй загрузчик берет готовый индекс, файл индекса не переписывается
+        long indexModified = index.lastModified();
+        index.setLastModified(indexModified - 10000);
+
+        PGNLoader reopened = new PGNLoader();
+        assertEquals("G19", event(reopened, file, 19));
+        assertEquals(20, reopened.getGamesCount());
+        assertEquals(indexModified - 10000, index.lastModified());
+    }
+
+    @Test
+    public void rebuildsIndexOfOldFormat() throws Exception {
+        File file = folder.newFile("old.pgn");
+
+        write(file, game("A", "1. e4 *") + game("B", "1. d4 *") + game("C", "1. c4 *"), false);
+        write(indexOf(file), "3\n0\n9\n", false);
+
+        PGNLoader loader = new PGNLoader();
+        assertEquals("C", event(loader, file, 2));
+        assertEquals(3, loader.getGamesCount());
+        assertEquals(36 + 3 * 8, indexOf(file).length());
+    }
+
+    @Test
+    public void rangesFindEveryGameOnce() throws Exception {
+        File file = folder.newFile("ranges.pgn");
+
+        // в комментариях есть '[' - начало партии это только '[' в начале строки после строки ходов
+        write(file, "\uFEFF" + game("A", "1. e4 {[%clk 0:05:00]} e5 *") + game("B", "1. d4 {see [1]} d5\n2. c4 *")
+                + "[Event \"C\"]\n[White \"x\"]\n\n1. c4 1-0\n" + game("D", "1. Nf3 ; [x]\nNf6 *"), false);
+
+        long[] expected = readOffsets(file);
+        long size = file.length();
+
+        assertEquals(4, expected.length);
+        for (boolean validate : new boolean[] {true, false}) {
+            PGNIndexBuilder builder = new PGNIndexBuilder(file.getPath(), validate);
+
+            assertArrayEquals(expected, builder.build(0, size));
+            // партия относится к диапазону, в котором лежит ее первый байт, при любой границе диапазонов
+            for (long middle = 1; middle < size; middle++) {
+                assertArrayEquals(String.valueOf(middle), expected, concat(builder.build(0, middle), builder.build(middle, size)));
+            }
+        }
+    }
+
+    @Test
+    public void buildsLargeFileInParallel() throws Exception {
+        File file = folder.newFile("large.pgn");
+        StringBuilder pgn = new StringBuilder();
+
+        // больше 2 МБ, чтобы файл делился на несколько диапазонов
+        for (int i = 0; pgn.length() < 3 * 1024 * 1024; i++) {
+            pgn.append(game("G" + i, "1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 5. O-O Be7 *"));
+        }
+        write(file, pgn.toString(), false);
+
+        long[] expected = readOffsets(file);
+        assertArrayEquals(expected, new PGNIndexBuilder(file.getPath(), false).build(0, file.length()));
+
+        PGNLoader loader = new PGNLoader();
+        loader.setIndexValidation(false);
+        assertEquals("G" + (expected.length - 1), event(loader, file, expected.length - 1));
+        assertEquals(expected.length, loader.getGamesCount());
+    }
+
+    @Test
+    public void invalidGameKeepsItsPlaceInIndex() throws Exception {
+        File file = folder.newFile("invalid.pgn");
+
+        write(file, game("A", "1. e4 e5 *") + game("B", "1. e4 Ke7 2. Qh5 Kxh5 *") + game("C", "1. d4 d5 *"), false);
+
+        PGNLoader loader = new PGNLoader();
+        assertEquals("C", event(loader, file, 2));
+        assertEquals(3, loader.getGamesCount());
+
+        assertTrue(indexOf(file).delete());
+        loader = new PGNLoader();
+        loader.setIndexValidation(false);
+        assertEquals("C", event(loader, file, 2));
+        assertEquals(3, loader.getGamesCount());
+    }
+
+    private static String mainLine(MoveList moves) {
+        StringBuilder result = new StringBuilder();
+
+        for (; !moves.isEmpty(); moves = moves.get(0).getVariants()) {
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(moves.get(0).getNotation());
+        }
+
+        return result.toString();
+    }
+
+    private static void assertEvents(File file, String... events) throws PGNError {
+        PGNLoader loader = new PGNLoader();
+
+        for (int i = 0; i < events.length; i++) {
+            assertEquals(events[i], event(loader, file, i));
+        }
+        assertEquals(events.length, loader.getGamesCount());
+    }
+
+    @Test
+    public void appendedGamesAreIndexed() throws Exception {
+        File file = folder.newFile("live.pgn");
+
+        // последняя партия еще дописывается
+        write(file, game("A", "1. e4 e5 *") + game("B", "1. d4 d5 *") + "[Event \"C\"]\n\n1. c4 c5 2.", false);
+
+        PGNLoader loader = new PGNLoader();
+        assertEquals("A", event(loader, file, 0));
+        assertEquals(3, loader.getGamesCount());
+
+        write(file, " Nf3 Nc6 *\n\n" + game("D", "1. Nf3 Nf6 *"), true);
+        file.setLastModified(file.lastModified() + 2000);
+
+        assertEquals("D", event(loader, file, 3));
+        assertEquals(4, loader.getGamesCount());
+        assertEquals("c4 c5 Nf3 Nc6", mainLine(loader.getGame(file.getPath(), 2).getMoves()));
+        assertEvents(file, "A", "B", "C", "D");
+    }
+
+    @Test
+    public void rewrittenFileIsIndexedAgain() throws Exception {
+        File file = folder.newFile("rewritten.pgn");
+
+        write(file, game("A", "1. e4 *") + game("B", "1. d4 *") + game("C", "1. c4 *"), false);
+        long modified = file.lastModified();
+
+        PGNLoader loader = new PGNLoader();
+        assertEquals("B", event(loader, file, 1));
+
+        // размер тот же, изменилось только время
+        write(file, game("D", "1. f4 *") + game("E", "1. b3 *") + game("F", "1. g3 *"), false);
+        file.setLastModified(modified + 2000);
+        assertEquals("E", event(loader, file, 1));
+        assertEvents(file, "D", "E", "F");
+
+        // файл стал больше, но изменилось и его начало: контрольная сумма не совпадает, и индекс строится заново,
+        // а не дописывается с прежнего начала последней партии (теперь это середина первой)
+        write(file, game("G", "1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 *") + game("H", "1. d4 *"), false);
+        file.setLastModified(modified + 4000);
+        assertEquals("H", event(loader, file, 1));
+        assertEquals(2, loader.getGamesCount());
+        assertEvents(file, "G", "H");
+    }
+}
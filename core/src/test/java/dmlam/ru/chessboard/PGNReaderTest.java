@@ -0,0 +1,146 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PGNReaderTest {
+    // записывает события разбора одной строкой, через пробел
+    private static class Recorder implements IPGNListener {
+        private final StringBuilder events = new StringBuilder();
+
+        private void add(String event) {
+            if (events.length() > 0) {
+                events.append(' ');
+            }
+            events.append(event);
+        }
+
+        String take() {
+            String result = events.toString();
+
+            events.setLength(0);
+            return result;
+        }
+
+        @Override
+        public void onTag(String name, String value) {
+            add("[" + name + "=" + value + "]");
+        }
+
+        @Override
+        public void onMoveNumber(int moveNumber, Piece.Color moveOrder) {
+            add(moveNumber + (moveOrder == Piece.Color.BLACK ? "..." : "."));
+        }
+
+        @Override
+        public void onMove(String move) {
+            add(move);
+        }
+
+        @Override
+        public void onNumericAnnotationGlyph(int glyph) {
+            add("$" + glyph);
+        }
+
+        @Override
+        public void onAnnotation(String annotation) {
+            add(annotation);
+        }
+
+        @Override
+        public void onComment(String comment) {
+            add("{" + comment + "}");
+        }
+
+        @Override
+        public void onVariationStart() {
+            add("(");
+        }
+
+        @Override
+        public void onVariationEnd() {
+            add(")");
+        }
+
+        @Override
+        public void onGameEnd(Game.GameResult result) {
+            add("end:" + result);
+        }
+    }
+
+    private static String readOne(PGNReader reader) throws IOException, PGNError {
+        Recorder recorder = new Recorder();
+
+        assertTrue(reader.readGame(recorder));
+        return recorder.take();
+    }
+
+    @Test
+    public void skipsByteOrderMark() throws Exception {
+        byte[] text = "[Event \"x\"]\n\n1. e4 *\n".getBytes("UTF-8");
+        byte[] withBOM = new byte[text.length + 3];
+
+        withBOM[0] = (byte) 0xEF;
+        withBOM[1] = (byte) 0xBB;
+        withBOM[2] = (byte) 0xBF;
+        System.arraycopy(text, 0, withBOM, 3, text.length);
+
+        PGNReader reader = new PGNReader(new ByteArrayInputStream(withBOM));
+
+        assertEquals("[Event=x] 1. e4 end:UNKNOWN", readOne(reader));
+        assertEquals(3, reader.getGameOffset());
+    }
+
+    @Test
+    public void skipsEscapeLines() throws Exception {
+        PGNReader reader = new PGNReader("% escape line\n[Event \"x\"]\n\n1. e4\n% another one (e5\ne5 1-0\n");
+
+        assertEquals("[Event=x] 1. e4 e5 end:WHITE", readOne(reader));
+        assertFalse(reader.readGame(new Recorder()));
+    }
+
+    @Test
+    public void readsCommentsToEndOfLine() throws Exception {
+        PGNReader reader = new PGNReader("1. e4 ; comment {not a brace comment}\r\ne5 {two\nlines} 1/2-1/2");
+
+        assertEquals("1. e4 { comment {not a brace comment}} e5 {two lines} end:DRAW", readOne(reader));
+    }
+
+    @Test
+    public void readsNestedVariations() throws Exception {
+        PGNReader reader = new PGNReader("1. d4 d5 (1... Nf6 2. c4 (2. Nf3 g6 $1) e6!?) 2. c4 0-1");
+
+        assertEquals("1. d4 d5 ( 1... Nf6 2. c4 ( 2. Nf3 g6 $1 ) e6 !? ) 2. c4 end:BLACK", readOne(reader));
+    }
+
+    @Test(expected = PGNError.class)
+    public void rejectsUnbalancedVariation() throws Exception {
+        readOne(new PGNReader("1. d4 d5 ) 2. c4 *"));
+    }
+
+    @Test
+    public void dropsEnPassantMark() throws Exception {
+        PGNReader reader = new PGNReader("1. e4 d5 2. e5 f5 3. exf6 e.p. exf6 *");
+
+        assertEquals("1. e4 d5 2. e5 f5 3. exf6 exf6 end:UNKNOWN", readOne(reader));
+    }
+
+    @Test
+    public void gameWithoutResultEndsAtNextTag() throws Exception {
+        String second = "[Event \"y\"]\n\n1. d4 *\n";
+        String pgn = "[Event \"x\"]\n\n1. e4 e5\n\n" + second;
+        PGNReader reader = new PGNReader(pgn);
+
+        assertEquals("[Event=x] 1. e4 e5 end:null", readOne(reader));
+        assertEquals("[Event=y] 1. d4 end:UNKNOWN", readOne(reader));
+        assertEquals(pgn.indexOf(second), reader.getGameOffset());
+        assertEquals(4, reader.getGameLine());
+        assertFalse(reader.readGame(new Recorder()));
+    }
+}
@@ -0,0 +1,118 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import dmlam.ru.chessboard.Piece.Color;
+import dmlam.ru.chessboard.Piece.Kind;
+
+import static dmlam.ru.chessboard.TestBoards.EN_PASSANT;
+import static dmlam.ru.chessboard.TestBoards.KIWIPETE;
+import static dmlam.ru.chessboard.TestBoards.PROMOTION;
+import static dmlam.ru.chessboard.TestBoards.board;
+import static dmlam.ru.chessboard.TestBoards.findMove;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PositionTest {
+    @Test
+    public void playMatchesChessBoard() {
+        // после каждого хода позиция совпадает с доской, на которой сделан тот же ход: и по полям, и по хешу
+        for (String FEN : new String[] {ChessBoard.STARTING_POSITION_FEN, KIWIPETE, EN_PASSANT, PROMOTION}) {
+            ChessBoard board = board(FEN);
+            Position position = Position.fromFEN(FEN);
+
+            for (int move : position.legalMoves()) {
+                Position next = position.play(move);
+
+                board.makeMove(move);
+                assertEquals(PackedMove.toString(move), board.getPosition(), next);
+                assertEquals(PackedMove.toString(move), board.getPositionHash(), next.getPositionHash());
+                board.unmakeMove();
+            }
+        }
+    }
+
+    @Test
+    public void playDoesNotChangePosition() {
+        Position position = Position.fromFEN(KIWIPETE);
+        Position copy = Position.fromFEN(KIWIPETE);
+
+        for (int move : position.legalMoves()) {
+            position.play(move);
+        }
+
+        assertEquals(copy, position);
+        assertEquals(KIWIPETE, position.toFEN());
+    }
+
+    @Test
+    public void equalsAndHashCode() {
+        Position position = Position.fromFEN(ChessBoard.STARTING_POSITION_FEN);
+        Position transposed = position;
+
+        for (String move : new String[] {"g1f3", "g8f6", "f3g1", "f6g8"}) {
+            transposed = transposed.play(findMove(transposed, move));
+        }
+
+        // поля те же, но номер хода другой
+        assertEquals(position.getPositionHash(), transposed.getPositionHash());
+        assertNotEquals(position, transposed);
+
+        Position same = Position.fromFEN(transposed.toFEN());
+        assertEquals(transposed, same);
+        assertEquals(transposed.hashCode(), same.hashCode());
+        assertFalse(position.equals(null));
+        assertFalse(position.equals(ChessBoard.STARTING_POSITION_FEN));
+    }
+
+    @Test
+    public void legalMoves() {
+        assertEquals(20, Position.fromFEN(ChessBoard.STARTING_POSITION_FEN).legalMoves().length);
+        assertEquals(48, Position.fromFEN(KIWIPETE).legalMoves().length);
+        assertEquals(24, Position.fromFEN(PROMOTION).legalMoves().length);
+    }
+
+    @Test
+    public void castlingEnPassantAndPromotion() {
+        Position castled = Position.fromFEN(KIWIPETE).play(findMove(Position.fromFEN(KIWIPETE), "e1g1"));
+
+        assertEquals(Kind.KING, castled.getPieceKind(6, 0));
+        assertEquals(Kind.ROOK, castled.getPieceKind(5, 0));
+        assertNull(castled.getPieceKind(7, 0));
+        assertFalse(castled.isCastlingPossible(Color.WHITE, ChessBoard.Castling.KING));
+        assertFalse(castled.isCastlingPossible(Color.WHITE, ChessBoard.Castling.QUEEN));
+        assertTrue(castled.isCastlingPossible(Color.BLACK, ChessBoard.Castling.KING));
+
+        Position taken = Position.fromFEN(EN_PASSANT);
+        taken = taken.play(findMove(taken, "e5f6"));
+
+        assertEquals(Kind.PAWN, taken.getPieceKind(5, 5));
+        assertNull(taken.getPieceKind(5, 4));
+        assertNull(taken.getPieceKind(4, 4));
+
+        Position promoted = Position.fromFEN(PROMOTION);
+        promoted = promoted.play(findMove(promoted, "g2h1n"));
+
+        assertEquals(Kind.KNIGHT, promoted.getPieceKind(7, 0));
+        assertEquals(Color.BLACK, promoted.getPieceColor(7, 0));
+        assertEquals(Color.WHITE, promoted.getMoveOrder());
+    }
+
+    @Test
+    public void mateAndStalemate() {
+        Position mated = Position.fromFEN("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+
+        assertTrue(mated.isInCheck());
+        assertTrue(mated.isCheckmate());
+        assertFalse(mated.isStalemate());
+        assertEquals(0, mated.legalMoves().length);
+
+        Position stalemate = Position.fromFEN("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+
+        assertTrue(stalemate.isStalemate());
+        assertFalse(stalemate.hasAnyLegalMove());
+    }
+}
@@ -0,0 +1,107 @@
+package dmlam.ru.chessboard;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static dmlam.ru.chessboard.TestBoards.board;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RecentMovesTest {
+    private static final String FEN = "4k3/P7/8/8/8/8/8/4K3 w - - 0 1";
+
+    private IDiagnostics savedDiagnostics;
+    private final Map<String, String> customData = new HashMap<>();
+    private final Map<String, Object> lazyData = new HashMap<>();
+    private int lazyPuts = 0;
+
+    @Before
+    public void setUp() {
+        savedDiagnostics = Diagnostics.get();
+        Diagnostics.set(new IDiagnostics() {
+            @Override
+            public void logError(String tag, String message) {
+            }
+
+            @Override
+            public String getCustomData(String key) {
+                return customData.get(key);
+            }
+
+            @Override
+            public void putCustomData(String key, String value) {
+                customData.put(key, value);
+            }
+
+            @Override
+            public void putLazyData(String key, Object value) {
+                lazyPuts++;
+                lazyData.put(key, value);
+            }
+
+            @Override
+            public void flushLazyData() {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        Diagnostics.set(savedDiagnostics);
+    }
+
+    private static void play(ChessBoard board, String... moves) {
+        for (String move : moves) {
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+        }
+    }
+
+    @Test
+    public void keepsLastMovesPacked() {
+        ChessBoard board = board(FEN);
+        RecentMoves recent = new RecentMoves(3);
+
+        assertEquals("", recent.toString());
+        play(board, "a8=Q+");
+        recent.add(board.getLastMove());
+        play(board, "Kd7");
+        recent.add(board.getLastMove());
+        assertEquals(2, recent.size());
+        assertEquals("a7a8q e8d7", recent.toString());
+
+        // буфер заполнен - самые старые ходы вытесняются
+        play(board, "Ke2", "Kd6", "Qa1");
+        recent.add(board.getLastMove().getPrevMove().getPrevMove());
+        recent.add(board.getLastMove().getPrevMove());
+        recent.add(board.getLastMove());
+        assertEquals(3, recent.size());
+        assertEquals("e1e2 d7d6 a8a1", recent.toString());
+    }
+
+    @Test
+    public void boardReportsItsMovesOnce() {
+        ChessBoard board = board(FEN);
+
+        play(board, "a8=Q+", "Kd7", "Ke2");
+        // пока задача загружается, ходы в отчет не попадают
+        customData.put("start loading problem", "1");
+        play(board, "Kd6");
+        customData.remove("start loading problem");
+        play(board, "Qa1");
+
+        assertEquals(1, lazyPuts);
+        Object report = lazyData.values().iterator().next();
+        assertEquals("a7a8q e8d7 e1e2 a8a1", report.toString());
+
+        // буфер передается по ссылке и при следующих ходах не передается заново
+        play(board, "Kc5");
+        assertEquals(1, lazyPuts);
+        assertSame(report, lazyData.values().iterator().next());
+        assertEquals("a7a8q e8d7 e1e2 a8a1 d6c5", report.toString());
+    }
+}
@@ -0,0 +1,100 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import static dmlam.ru.chessboard.TestBoards.board;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShortNotationTest {
+    private static String notationOf(String FEN, String move) {
+        ChessBoard board = board(FEN);
+
+        assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+        return board.getLastMove().getNotation();
+    }
+
+    @Test
+    public void parsesCastlingInBothSpellings() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        for (String move : new String[] {"e4", "e5", "Nf3", "Nc6", "Bc4", "Bc5", "O-O", "Nf6", "d3", "0-0"}) {
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+        }
+        assertTrue(board.saveToFEN(), board.saveToFEN().startsWith("r1bq1rk1/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQ1RK1 w"));
+    }
+
+    @Test
+    public void parsesLongCastlingInAllSpellings() {
+        for (String move : new String[] {"O-O-O", "o-o-o", "0-0-0", "O-O-O+"}) {
+            ChessBoard board = board("r3k3/3p4/8/8/8/8/8/R3K3 w Qq - 0 1");
+
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+            assertTrue(move, board.saveToFEN().startsWith("r3k3/3p4/8/8/8/8/8/2KR4 b q"));
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move.toLowerCase()));
+            assertTrue(move, board.saveToFEN().startsWith("2kr4/3p4/8/8/8/8/8/2KR4 w - "));
+        }
+    }
+
+    @Test
+    public void rejectsMovesOfTheWrongSide() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        assertFalse(board.shortMove(Piece.Color.BLACK, "a6"));
+    }
+
+    @Test
+    public void parsesEnPassantAndPromotion() {
+        ChessBoard board = board("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1");
+
+        assertTrue(board.shortMove(board.getMoveOrder(), "exd6 e.p."));
+        assertTrue(board.saveToFEN(), board.saveToFEN().startsWith("4k3/8/3P4/8/8/8/8/4K3 b"));
+
+        board = board("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1");
+        assertTrue(board.shortMove(board.getMoveOrder(), "b8=N+"));
+        assertTrue(board.saveToFEN(), board.saveToFEN().startsWith("1N2k3/"));
+    }
+
+    @Test
+    public void resolvesOnlyLegalMoves() {
+        ChessBoard board = board("4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1");
+
+        assertEquals(PackedMove.NO_MOVE, board.resolveShortMove("Nd2"));  // неоднозначно
+        assertEquals(PackedMove.NO_MOVE, board.resolveShortMove("Qd2"));
+        assertEquals(PackedMove.NO_MOVE, board.resolveShortMove("O-O-O"));
+        assertEquals("b1d2", PackedMove.toString(board.resolveShortMove("Nbd2")));
+        assertEquals("f1d2", PackedMove.toString(board.resolveShortMove("Nfd2")));
+    }
+
+    @Test
+    public void pinnedPieceDoesNotMakeMoveAmbiguous() {
+        ChessBoard board = board("4k3/8/8/8/8/8/8/rN2KN2 w - - 0 1");
+
+        assertTrue(board.shortMove(board.getMoveOrder(), "Nd2"));
+        assertTrue(board.saveToFEN(), board.saveToFEN().startsWith("4k3/8/8/8/8/8/3N4/rN2K3 b"));
+        assertEquals("Nd2", board.getLastMove().getNotation());
+    }
+
+    @Test
+    public void disambiguatesByFileRankOrSquare() {
+        assertEquals("Nbd2", notationOf("4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1", "Nbd2"));
+        // лишнее уточнение в записи хода допускается, но в нотацию не попадает
+        assertEquals("Rb3", notationOf("4k3/8/8/8/8/8/1R6/1R2K3 w - - 0 1", "R2b3"));
+        assertEquals("R1b2", notationOf("4k3/8/8/8/8/1R6/8/1R2K3 w - - 0 1", "R1b2"));
+        assertEquals("Qa5b4", notationOf("4k3/8/8/Q1Q5/8/Q7/8/4K3 w - - 0 1", "Qa5b4"));
+    }
+
+    @Test
+    public void appendsCheckAndMate() {
+        ChessBoard board = board(ChessBoard.STARTING_POSITION_FEN);
+
+        for (String move : new String[] {"f3", "e5", "g4", "Qh4#"}) {
+            assertTrue(move, board.shortMove(board.getMoveOrder(), move));
+        }
+        assertEquals("Qh4#", board.getLastMove().getNotation());
+        assertTrue(board.isCurrentPlayerCheckmated());
+
+        assertEquals("Qe2+", notationOf("4k3/8/8/8/8/8/8/3QK3 w - - 0 1", "Qe2"));
+    }
+}
@@ -0,0 +1,49 @@
+package dmlam.ru.chessboard;
+
+// позиции и доски, общие для тестов
+final class TestBoards {
+    // рокировки, взятия на проходе и превращения (Kiwipete)
+    static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    // белые могут взять пешку f5 на проходе
+    static final String EN_PASSANT = "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3";
+    // превращения пешек со взятием и без
+    static final String PROMOTION = "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1";
+
+    private TestBoards() {
+    }
+
+    static ChessBoard board(String FEN) {
+        return board(FEN, ChessBoard.MoveMode.FULL);
+    }
+
+    static ChessBoard board(String FEN, ChessBoard.MoveMode mode) {
+        ChessBoard board = new ChessBoard();
+
+        board.setMoveMode(mode);
+        board.loadFromFEN(FEN);
+        return board;
+    }
+
+    static int findMove(ChessBoard board, String move) {
+        int[] moves = new int[ChessBoard.MAX_MOVES];
+        int count = board.generateLegalMoves(moves);
+
+        for (int i = 0; i < count; i++) {
+            if (PackedMove.toString(moves[i]).equals(move)) {
+                return moves[i];
+            }
+        }
+
+        throw new AssertionError(move + " is not legal in " + board.saveToFEN());
+    }
+
+    static int findMove(Position position, String move) {
+        for (int legalMove : position.legalMoves()) {
+            if (PackedMove.toString(legalMove).equals(move)) {
+                return legalMove;
+            }
+        }
+
+        throw new AssertionError(move + " is not legal in " + position);
+    }
+}
@@ -0,0 +1,62 @@
+package dmlam.ru.chessboard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrustedImportTest {
+    private static final String[] GAMES = {
+            "[Event \"a\"]\n\n1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 5. O-O Be7 6. Re1 b5 7. Bb3 d6 8. c3 O-O 9. h3 Nb8 1-0\n",
+            "[Event \"b\"]\n\n1. f3 e5 2. g4 Qh4# 0-1\n",
+            "[Event \"c\"]\n[FEN \"7k/5Q2/6K1/8/8/8/8/8 w - - 0 1\"]\n\n1. Kh6?? (1. Qf6+ Kg8 2. Qg7#) 1/2-1/2\n",
+            "[Event \"d\"]\n[FEN \"4k3/P7/8/3pP3/8/8/8/4K2R w K d6 0 1\"]\n\n1. exd6 e.p. Kd7 2. a8=Q Kxd6 3. O-O Ke5 4. Qa5+ *\n",
+            "[Event \"e\"]\n[FEN \"4k3/8/8/8/1N3N2/8/4R3/4K2R w - - 0 1\"]\n\n1. Nbd3 Kd7 2. Rh7+ Kc6 3. Re6+ Kb5 4. Nd5 Ka4 *\n",
+            "[Event \"f\"]\n[FEN \"4k3/8/8/b7/8/8/3N1N2/4K3 w - - 0 1\"]\n\n1. Ne4 Ke7 *\n",
+    };
+
+    private static String describe(Move move) {
+        return move.getNotation() + " check=" + move.isOpponentChecked() + " mate=" + move.isOpponentCheckmated()
+                + " stalemate=" + move.isOpponentStalemated() + " " + move.getFEN() + " " + move.getPositionHash();
+    }
+
+    // деревья ходов совпадают вместе с нотацией, шахом, матом, патом, FEN и хешем позиции после каждого хода
+    private static int compare(MoveList expected, MoveList actual) {
+        int count = 0;
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(describe(expected.get(i)), describe(actual.get(i)));
+            count += 1 + compare(expected.get(i).getVariants(), actual.get(i).getVariants());
+        }
+
+        return count;
+    }
+
+    @Test
+    public void trustedImportMatchesFullImport() throws PGNError {
+        for (String pgn : GAMES) {
+            PGNLoader full = new PGNLoader();
+            PGNLoader trusted = new PGNLoader();
+
+            trusted.setTrustedImport(true);
+            assertTrue(pgn, compare(full.getGame(pgn).getMoves(), trusted.getGame(pgn).getMoves()) > 0);
+        }
+    }
+
+    @Test
+    public void trustedImportFindsMateAndStalemate() throws PGNError {
+        PGNLoader trusted = new PGNLoader();
+
+        trusted.setTrustedImport(true);
+
+        Move mate = trusted.getGame(GAMES[1]).getMoves().get(0).getVariants().get(0).getVariants().get(0).getVariants().get(0);
+        assertEquals("Qh4#", mate.getNotation());
+        assertTrue(mate.isOpponentCheckmated());
+
+        Move stalemate = trusted.getGame(GAMES[2]).getMoves().get(0);
+        assertTrue(stalemate.isOpponentStalemated());
+        assertFalse(stalemate.isOpponentChecked());
+    }
+}
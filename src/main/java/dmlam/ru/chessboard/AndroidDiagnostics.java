@@ -0,0 +1,66 @@
+package dmlam.ru.chessboard;
+
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dmlam.ru.androidcommonlib.ACRAUtils;
+
+// передает ошибки движка в Log, а данные для отчета о падении - в ACRA.
+// Отложенные данные (putLazyData) форматируются в ACRA при ошибке движка (logError), при падении приложения
+// и по вызову flushLazyData(), который нужно делать перед отправкой в ACRA перехваченного исключения
+public class AndroidDiagnostics implements IDiagnostics {
+    private static final String LOGTAG = AndroidDiagnostics.class.getName();
+
+    private final Map<String, Object> lazyData = new ConcurrentHashMap<>();
+    private final AtomicBoolean handlerInstalled = new AtomicBoolean(false);
+
+    @Override
+    public void logError(String tag, String message) {
+        flushLazyData();
+        Log.e(tag, message);
+    }
+
+    @Override
+    public String getCustomData(String key) {
+        return ACRAUtils.getCustomData(key);
+    }
+
+    @Override
+    public void putCustomData(String key, String value) {
+        ACRAUtils.putCustomData(key, value);
+    }
+
+    @Override
+    public void putLazyData(String key, Object value) {
+        lazyData.put(key, value);
+        if (handlerInstalled.compareAndSet(false, true)) {
+            // обработчик ставим при первом обращении, когда ACRA уже инициализирована, и передаем ему исключение дальше
+            final Thread.UncaughtExceptionHandler next = Thread.getDefaultUncaughtExceptionHandler();
+
+            Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(Thread thread, Throwable throwable) {
+                    flushLazyData();
+                    if (next != null) {
+                        next.uncaughtException(thread, throwable);
+                    }
+                }
+            });
+        }
+    }
+
+    // форматирует отложенные данные и кладет их в ACRA перед формированием отчета
+    @Override
+    public void flushLazyData() {
+        for (Map.Entry<String, Object> entry : lazyData.entrySet()) {
+            try {
+                ACRAUtils.putCustomData(entry.getKey(), String.valueOf(entry.getValue()));
+            } catch (RuntimeException E) {
+                Log.e(LOGTAG, "Error formatting crash report data " + entry.getKey() + ": " + E.toString());
+            }
+        }
+    }
+}
@@ -9,7 +9,6 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.RectF;
 import android.media.MediaPlayer;
@@ -52,6 +51,11 @@ public class ChessBoardView extends View implements SelectPawnTransformationDial
         IOnMoveListener{
     private static final String LOGTAG = ChessBoardView.class.getName();
 
+    static {
+        // ошибки движка пишем в Log, а данные для отчета о падении - в ACRA
+        Diagnostics.set(new AndroidDiagnostics());
+    }
+
     private final int LONG_PRESS_DELAY = 800; // минимальная длительность длинного нажатия для вызова меню (мс.)
     private final int LONG_PRESS_MAX_SHIFT = 20; // максимальное расстояние точки отпускания от точки нажатия для срабатывания длительного нажатия
     private final int MOVE_ANIMATION_TICK_COUNT = 50;
@@ -674,7 +678,8 @@ public class ChessBoardView extends View implements SelectPawnTransformationDial
 
             out.writeByte((byte) (this.selectingPawnTransformation ? 1 : 0));
             if (this.selectingPawnTransformation) {
-                out.writeParcelable(sourceSquare, 0);
+                out.writeInt(sourceSquare.x);
+                out.writeInt(sourceSquare.y);
                 out.writeString(color.name());
             }
         }
@@ -684,7 +689,7 @@ public class ChessBoardView extends View implements SelectPawnTransformationDial
 
             this.selectingPawnTransformation = in.readByte() != 0;
             if (this.selectingPawnTransformation) {
-                sourceSquare = in.readParcelable(Point.class.getClassLoader());
+                sourceSquare = new Point(in.readInt(), in.readInt());
                 color = valueOf(in.readString());
             }
         }
@@ -3,7 +3,6 @@ package dmlam.ru.chessboard;
 import android.app.Activity;
 import android.app.Dialog;
 import android.graphics.Bitmap;
-import android.graphics.Point;
 import android.os.Bundle;
 import androidx.fragment.app.DialogFragment;
 import android.view.Gravity;